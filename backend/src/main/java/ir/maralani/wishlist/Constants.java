@@ -8,6 +8,8 @@ public class Constants {
 
         public static final String DEV = "dev";
         public static final String PROD = "prod";
+        // Instrumentation of the test suite, on top of the development profile
+        public static final String TEST = "test";
 
         /**
          * No-Op private constructor enforcing final status
@@ -98,9 +100,38 @@ public class Constants {
         }
     }
 
+    /**
+     * Identifier generation
+     */
+    public static class Persistence {
+
+        public static final String ID_SEQUENCE = "hibernate_sequence";
+        public static final String ID_GENERATOR_STRATEGY = "org.hibernate.id.enhanced.SequenceStyleGenerator";
+        // Identifiers are allocated in blocks, the sequence is advanced once per block instead of once per insert.
+        // Must always match incrementBy of the sequence, see db/changelog/1_pooled_id_generation.xml
+        public static final int ID_BLOCK_SIZE = 50;
+        public static final String ID_BLOCK_SIZE_VALUE = "" + ID_BLOCK_SIZE;
+        // Hands out the sequence value itself as the first id of a block, so existing ids are never reused
+        public static final String ID_OPTIMIZER = "pooled-lo";
+        // Second-level cache regions of roles by id and of role ids by name
+        public static final String ROLE_CACHE_REGION = "roles";
+        public static final String ROLE_NATURAL_ID_CACHE_REGION = "roles-by-name";
+
+        /**
+         * No-Op private constructor enforcing final status
+         */
+        private Persistence() {
+            throw new IllegalAccessError("Cannot be instantiated.");
+        }
+    }
+
     public static class Crypto {
         public static final String ALGORITHM_PROPERTY = "ENCRYPTION_ALGORITHM";
         public static final String KEY_PROPERTY = "ENCRYPTION_KEY";
+        // Written before authenticated encryption was supported, still used to read such values
+        public static final String LEGACY_ALGORITHM = "AES/ECB/PKCS5Padding";
+        // Authenticated encryption with a random IV per value
+        public static final String AUTHENTICATED_ALGORITHM = "AES/GCM/NoPadding";
         public static final String DEFAULT_KEY = "Jk7q93nlSyaxXVmz31kJbPNS1SsYO0kCB217S37J";
     }
 }
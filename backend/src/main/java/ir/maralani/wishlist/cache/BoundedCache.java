@@ -0,0 +1,255 @@
+package ir.maralani.wishlist.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Size bounded, expiry aware in-memory cache.
+ * <p>
+ * Entries are kept in access order, so once {@link #maximumSize} is reached the least recently used
+ * entry is evicted in constant time. Every entry carries its own expiry instant, which is either the
+ * cache-wide time to live or, when an expiry function is given, whichever comes first of that and the
+ * expiry reported by the cached value itself (e.g. the expiration claim of a token).
+ * <p>
+ * Statistics are recorded with {@link LongAdder}s and published through {@link BoundedCacheMetrics}.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class BoundedCache<K, V> {
+
+    /**
+     * Name of this cache, used to tag the published metrics
+     */
+    private final String name;
+
+    /**
+     * Maximum number of entries held at once
+     */
+    private final int maximumSize;
+
+    /**
+     * Upper bound for the lifetime of every entry
+     */
+    private final long timeToLiveMillis;
+
+    /**
+     * Extracts the absolute expiry (epoch millis) of a value, {@code null} if entries expire only by TTL
+     */
+    private final ToLongFunction<? super V> expiry;
+
+    /**
+     * Access ordered entries, guarded by its own monitor
+     */
+    private final Map<K, Entry<V>> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder totalLoadTimeNanos = new LongAdder();
+
+    /**
+     * @param name        name of the cache
+     * @param maximumSize maximum number of entries
+     * @param timeToLive  lifetime of every entry
+     */
+    public BoundedCache(String name, int maximumSize, Duration timeToLive) {
+        this(name, maximumSize, timeToLive, null);
+    }
+
+    /**
+     * @param name        name of the cache
+     * @param maximumSize maximum number of entries
+     * @param timeToLive  upper bound for the lifetime of every entry
+     * @param expiry      extracts the absolute expiry (epoch millis) of a value
+     */
+    public BoundedCache(String name, int maximumSize, Duration timeToLive, ToLongFunction<? super V> expiry) {
+        if (maximumSize <= 0)
+            throw new IllegalArgumentException("Maximum size of cache " + name + " must be positive.");
+
+        this.name = name;
+        this.maximumSize = maximumSize;
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.expiry = expiry;
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, BoundedCache.Entry<V>> eldest) {
+                if (size() > BoundedCache.this.maximumSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Looks up a live entry.
+     *
+     * @param key key to look up
+     * @return cached value or {@code null} if absent or expired
+     */
+    public V get(K key) {
+        final long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    hits.increment();
+                    return entry.value;
+                }
+                entries.remove(key);
+                evictions.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Looks up a live entry and loads it on a miss.
+     * The loader runs outside of the cache lock, and a failed load is not cached.
+     *
+     * @param key    key to look up
+     * @param loader computes the value on a miss
+     * @return cached or freshly loaded value
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value != null)
+            return value;
+
+        final long start = System.nanoTime();
+        try {
+            value = loader.apply(key);
+        } catch (RuntimeException e) {
+            loadFailures.increment();
+            throw e;
+        } finally {
+            totalLoadTimeNanos.add(System.nanoTime() - start);
+        }
+        loads.increment();
+
+        if (value != null)
+            put(key, value);
+        return value;
+    }
+
+    /**
+     * @param key   key
+     * @param value value to cache
+     */
+    public void put(K key, V value) {
+        final long now = System.currentTimeMillis();
+        long expiresAt = now + timeToLiveMillis;
+        if (expiry != null)
+            expiresAt = Math.min(expiresAt, expiry.applyAsLong(value));
+        if (expiresAt <= now)
+            return;
+
+        synchronized (entries) {
+            entries.put(key, new Entry<>(value, expiresAt));
+        }
+        puts.increment();
+    }
+
+    /**
+     * @param key key of the entry to drop
+     */
+    public void invalidate(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Drops every entry.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return number of entries, including expired ones not yet reclaimed
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return {@code name}
+     * @see #name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return {@code maximumSize}
+     * @see #maximumSize
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long putCount() {
+        return puts.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public long loadCount() {
+        return loads.sum();
+    }
+
+    public long loadFailureCount() {
+        return loadFailures.sum();
+    }
+
+    public long totalLoadTimeNanos() {
+        return totalLoadTimeNanos.sum();
+    }
+
+    /**
+     * @return ratio of lookups served from the cache, {@code 1} if there were no lookups yet
+     */
+    public double hitRatio() {
+        final long hitCount = hitCount();
+        final long requestCount = hitCount + missCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * Cached value along with its absolute expiry.
+     */
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ir.maralani.wishlist.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the statistics of a {@link BoundedCache} using the standard {@code cache.*} meter names,
+ * so every cache of the system can be observed and sized the same way.
+ */
+public class BoundedCacheMetrics extends CacheMeterBinder {
+
+    private final BoundedCache<?, ?> cache;
+
+    /**
+     * @param cache cache to observe
+     */
+    public BoundedCacheMetrics(BoundedCache<?, ?> cache) {
+        this(cache, Tags.empty());
+    }
+
+    /**
+     * @param cache cache to observe
+     * @param tags  extra tags for every meter
+     */
+    public BoundedCacheMetrics(BoundedCache<?, ?> cache, Iterable<Tag> tags) {
+        super(cache, cache.getName(), tags);
+        this.cache = cache;
+    }
+
+    @Override
+    protected Long size() {
+        return (long) cache.size();
+    }
+
+    @Override
+    protected long hitCount() {
+        return cache.hitCount();
+    }
+
+    @Override
+    protected Long missCount() {
+        return cache.missCount();
+    }
+
+    @Override
+    protected Long evictionCount() {
+        return cache.evictionCount();
+    }
+
+    @Override
+    protected long putCount() {
+        return cache.putCount();
+    }
+
+    @Override
+    protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+        Gauge.builder("cache.hit.ratio", cache, BoundedCache::hitRatio)
+                .tags(getTagsWithCacheName())
+                .description("Ratio of cache lookups that were served from the cache")
+                .register(registry);
+
+        Gauge.builder("cache.max.size", cache, BoundedCache::getMaximumSize)
+                .tags(getTagsWithCacheName())
+                .description("The maximum number of entries the cache holds")
+                .register(registry);
+
+        FunctionTimer.builder("cache.load.duration", cache,
+                BoundedCache::loadCount, BoundedCache::totalLoadTimeNanos, TimeUnit.NANOSECONDS)
+                .tags(getTagsWithCacheName())
+                .description("The time spent loading values on cache misses")
+                .register(registry);
+
+        FunctionCounter.builder("cache.load", cache, BoundedCache::loadFailureCount)
+                .tags(getTagsWithCacheName())
+                .tag("result", "failure")
+                .description("The number of times cache lookup methods failed to load a value")
+                .register(registry);
+    }
+}
@@ -0,0 +1,154 @@
+package ir.maralani.wishlist.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import ir.maralani.wishlist.exception.LoadTimeoutException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Collapses concurrent loads of the same key into a single one.
+ * <p>
+ * The first caller of a key runs the load on its own thread, every caller arriving while it is in flight
+ * waits for and shares its outcome, be it a value or a failure. Nothing is kept once the load completes,
+ * the next caller starts a new one; this is about concurrent callers only, not a cache.
+ * <p>
+ * Waiting callers give up after {@code timeout} with a {@link LoadTimeoutException}, rather than piling up
+ * behind a stuck load.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class SingleFlight<K, V> implements MeterBinder {
+
+    private final String name;
+    private final long timeoutNanos;
+
+    /**
+     * Loads in flight by key
+     */
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    /**
+     * @param name    name of the loads, used in meters
+     * @param timeout longest time a caller waits for a load started by another one
+     */
+    public SingleFlight(String name, Duration timeout) {
+        this.name = name;
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    /**
+     * @param key    key to load
+     * @param loader loads the value of a key, may return {@code null}
+     * @return loaded value, either by this caller or a concurrent one
+     * @throws LoadTimeoutException if the load of a concurrent caller didn't complete in time
+     */
+    public V load(K key, Function<? super K, ? extends V> loader) {
+        final CompletableFuture<V> flight = new CompletableFuture<>();
+        final CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null)
+            return await(key, existing);
+
+        loads.increment();
+        try {
+            final V value = loader.apply(key);
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            failures.increment();
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private V await(K key, CompletableFuture<V> flight) {
+        collapsed.increment();
+        try {
+            return flight.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new LoadTimeoutException("Load of " + name + " " + key + " didn't complete in time.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LoadTimeoutException("Interrupted while waiting for load of " + name + " " + key + ".", e);
+        } catch (ExecutionException e) {
+            // Same failure as the caller running the load
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * @return number of loads actually run
+     */
+    public long loadCount() {
+        return loads.sum();
+    }
+
+    /**
+     * @return number of calls which shared a load run by a concurrent caller
+     */
+    public long collapsedCount() {
+        return collapsed.sum();
+    }
+
+    /**
+     * @return number of loads which failed
+     */
+    public long failureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * @return number of callers which gave up waiting for a concurrent load
+     */
+    public long timeoutCount() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("singleflight.loads", this, SingleFlight::loadCount)
+                .tag("name", name)
+                .description("Loads actually run")
+                .register(registry);
+        FunctionCounter.builder("singleflight.collapsed", this, SingleFlight::collapsedCount)
+                .tag("name", name)
+                .description("Calls which shared a load already in flight instead of running their own")
+                .register(registry);
+        FunctionCounter.builder("singleflight.failures", this, SingleFlight::failureCount)
+                .tag("name", name)
+                .description("Loads which failed, the failure is propagated to every waiting caller")
+                .register(registry);
+        FunctionCounter.builder("singleflight.timeouts", this, SingleFlight::timeoutCount)
+                .tag("name", name)
+                .description("Calls which gave up waiting for a load in flight")
+                .register(registry);
+        Gauge.builder("singleflight.in.flight", inFlight, ConcurrentMap::size)
+                .tag("name", name)
+                .description("Loads currently in flight")
+                .register(registry);
+    }
+}
@@ -2,9 +2,14 @@ package ir.maralani.wishlist.configuration;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
 import ir.maralani.wishlist.Constants;
+import ir.maralani.wishlist.datasource.ReplicaRoutingDataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.ExitCodeGenerator;
 import org.springframework.boot.SpringApplication;
@@ -14,12 +19,20 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 import org.springframework.core.env.Environment;
+import org.springframework.data.auditing.DateTimeProvider;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.data.web.config.EnableSpringDataWebSupport;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * Configuration for default system datasource with support for JDBC connection pools.
@@ -32,13 +45,21 @@ import javax.sql.DataSource;
  * which are  described in great detail in relevant parts of the Spring Boot documentations.
  * <p>
  * Also, a high-performance connection pool is wired up to the configured datasource.
+ * <p>
+ * When replicas are configured ({@code database.replicas.urls}), each one gets a pool of its own and
+ * read-only transactions are routed to them, see {@link ReplicaRoutingDataSource}.
+ * <p>
+ * Every pool is sized and tuned from the {@code database.pool.*} and {@code database.driver.*} properties and
+ * publishes its metrics ({@code hikaricp.connections.*}, tagged by pool name) to the meter registry. The pools
+ * are bound to the registry once every singleton is created: the registry binds beans which need the
+ * datasource on creation, so it can't be resolved while the datasource is being created.
  */
 @Configuration
 @EnableJpaRepositories("ir.maralani.wishlist.repository")
-@EnableJpaAuditing(auditorAwareRef = "springSecurityAuditorAware")
+@EnableJpaAuditing(auditorAwareRef = "springSecurityAuditorAware", dateTimeProviderRef = "auditingDateTimeProvider")
 @EnableTransactionManagement
 @EnableSpringDataWebSupport
-public class DatabaseConfiguration {
+public class DatabaseConfiguration implements SmartInitializingSingleton {
 
     private final Logger log = LoggerFactory.getLogger(DatabaseConfiguration.class);
 
@@ -48,12 +69,34 @@ public class DatabaseConfiguration {
     private final ApplicationContext context;
 
     /**
-     * @param context Application context
+     * Registry the pools publish their metrics to, if there is one
+     */
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    /**
+     * Every pool created, to be bound to the registry
+     */
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    /**
+     * @param context       Application context
+     * @param meterRegistry Registry of the pool metrics
      * @see #context
      */
     @Autowired
-    public DatabaseConfiguration(ApplicationContext context) {
+    public DatabaseConfiguration(ApplicationContext context, ObjectProvider<MeterRegistry> meterRegistry) {
         this.context = context;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Auditing dates are {@link ZonedDateTime}s, which Spring Data doesn't derive from its default provider.
+     *
+     * @return provider of the current date/time for auditing
+     */
+    @Bean
+    public DateTimeProvider auditingDateTimeProvider() {
+        return () -> Optional.of(ZonedDateTime.now());
     }
 
     /**
@@ -68,8 +111,9 @@ public class DatabaseConfiguration {
     public DataSource getDevDataSource(DataSourceProperties dataSourceProperties) {
         log.debug("Configuring Development Datasource...");
 
-        return getManagedPoolDataSource(dataSourceProperties.getUrl(),
-                dataSourceProperties.getUsername(), dataSourceProperties.getPassword());
+        return withReplicas(getManagedPoolDataSource("primary", dataSourceProperties.getUrl(),
+                dataSourceProperties.getUsername(), dataSourceProperties.getPassword()),
+                dataSourceProperties.getUsername(), dataSourceProperties.getPassword(), null);
     }
 
     /**
@@ -103,26 +147,113 @@ public class DatabaseConfiguration {
             url = protocolSegment + url;
         }
 
-        return getManagedPoolDataSource(url, username, password);
+        return withReplicas(getManagedPoolDataSource("primary", url, username, password),
+                username, password, protocolSegment);
+    }
+
+    /**
+     * Routes read-only transactions to the configured replicas, if there are any.
+     * Replicas use the credentials of the primary unless given their own.
+     *
+     * @param primary         pooled datasource of the primary
+     * @param username        username of the primary
+     * @param password        password of the primary
+     * @param protocolSegment driver specific url section to add to replica urls lacking it, {@code null} for none
+     * @return the primary if there are no replicas, a routing {@code DataSource} otherwise
+     */
+    private DataSource withReplicas(DataSource primary, String username, String password, String protocolSegment) {
+        final Environment environment = context.getEnvironment();
+        final String[] urls = environment.getProperty("database.replicas.urls", String[].class, new String[0]);
+        if (urls.length == 0)
+            return primary;
+
+        final String replicaUsername = environment.getProperty("database.replicas.username", username);
+        final String replicaPassword = environment.getProperty("database.replicas.password", password);
+        final Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : urls) {
+            if (protocolSegment != null && !url.toLowerCase().startsWith(protocolSegment))
+                url = protocolSegment + url;
+            final String poolName = "replica-" + (replicas.size() + 1);
+            replicas.put(poolName, getManagedPoolDataSource(poolName, url, replicaUsername, replicaPassword));
+        }
+
+        log.debug("Routing read-only transactions to {} replicas...", replicas.size());
+
+        return new ReplicaRoutingDataSource(primary, replicas,
+                environment.getProperty("database.replicas.selection",
+                        ReplicaRoutingDataSource.Selection.class, ReplicaRoutingDataSource.Selection.ROUND_ROBIN),
+                environment.getProperty("database.replicas.max-lag", Duration.class, Duration.ofSeconds(5)),
+                environment.getProperty("database.replicas.check-interval", Duration.class, Duration.ofSeconds(5)),
+                environment.getRequiredProperty("database.replicas.lag-query"));
     }
 
     /**
      * Wraps a {@link DataSource} inside a HikariCP instance to provide pooling capabilities.
      *
+     * @param poolName name of the pool, tags its metrics
      * @param url      URL of the database
      * @param username username of the database
      * @param password password of the database
      * @return Pooled {@code Datasource}
      */
-    private DataSource getManagedPoolDataSource(String url, String username, String password) {
+    private DataSource getManagedPoolDataSource(String poolName, String url, String username, String password) {
+        final Environment environment = context.getEnvironment();
         HikariConfig hikariConfig = new HikariConfig();
 
+        hikariConfig.setPoolName(poolName);
         hikariConfig.setJdbcUrl(url);
 
         // Hikari doesn't like NULL values for username and password.
         hikariConfig.setUsername(username != null ? username : "");
         hikariConfig.setPassword(password != null ? password : "");
 
-        return new HikariDataSource(hikariConfig);
+        // A fixed size pool (minimum idle equal to the maximum size) doesn't open connections under a burst,
+        // when it can least afford to.
+        final int maximumPoolSize = environment.getProperty("database.pool.maximum-pool-size", Integer.class, 10);
+        hikariConfig.setMaximumPoolSize(maximumPoolSize);
+        hikariConfig.setMinimumIdle(
+                environment.getProperty("database.pool.minimum-idle", Integer.class, maximumPoolSize));
+        hikariConfig.setConnectionTimeout(environment.getProperty(
+                "database.pool.connection-timeout", Duration.class, Duration.ofSeconds(30)).toMillis());
+        hikariConfig.setValidationTimeout(environment.getProperty(
+                "database.pool.validation-timeout", Duration.class, Duration.ofSeconds(5)).toMillis());
+        hikariConfig.setIdleTimeout(environment.getProperty(
+                "database.pool.idle-timeout", Duration.class, Duration.ofMinutes(10)).toMillis());
+        hikariConfig.setMaxLifetime(environment.getProperty(
+                "database.pool.max-lifetime", Duration.class, Duration.ofMinutes(30)).toMillis());
+        hikariConfig.setLeakDetectionThreshold(environment.getProperty(
+                "database.pool.leak-detection-threshold", Duration.class, Duration.ZERO).toMillis());
+
+        // Driver properties, passed to pgjdbc along with the URL
+        hikariConfig.addDataSourceProperty("ApplicationName", poolName);
+        hikariConfig.addDataSourceProperty("prepareThreshold",
+                environment.getProperty("database.driver.prepare-threshold", "5"));
+        hikariConfig.addDataSourceProperty("preparedStatementCacheQueries",
+                environment.getProperty("database.driver.prepared-statement-cache-queries", "256"));
+        hikariConfig.addDataSourceProperty("preparedStatementCacheSizeMiB",
+                environment.getProperty("database.driver.prepared-statement-cache-size-mib", "5"));
+        hikariConfig.addDataSourceProperty("reWriteBatchedInserts",
+                environment.getProperty("database.driver.rewrite-batched-inserts", "false"));
+        hikariConfig.addDataSourceProperty("defaultRowFetchSize",
+                environment.getProperty("database.driver.default-row-fetch-size", "0"));
+
+        final HikariDataSource pool = new HikariDataSource(hikariConfig);
+        pools.add(pool);
+        return pool;
+    }
+
+    /**
+     * Binds the pools to the registry, unless Spring Boot did already (it does so for a plain pool).
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        final MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry == null)
+            return;
+
+        for (HikariDataSource pool : pools) {
+            if (pool.getMetricsTrackerFactory() == null && pool.getMetricRegistry() == null)
+                pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+        }
     }
 }
@@ -0,0 +1,91 @@
+package ir.maralani.wishlist.configuration;
+
+import ir.maralani.wishlist.web.FrontendResourceResolver;
+import ir.maralani.wishlist.web.SendfileResourceHttpMessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.PathResourceResolver;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+import java.time.Duration;
+
+/**
+ * Serves the Vue.js frontend, built into {@code public} of the classpath unless located elsewhere.
+ * <p>
+ * The build compresses the assets ahead of time, so a client accepting brotli or gzip is sent the
+ * {@code .br} or {@code .gz} variant of a file as is, never compressed on the fly. Assets under
+ * {@code static/} carry a content hash in their names and are cached by clients for good; everything else
+ * ({@code index.html}, which links the current assets) is revalidated on every use. Routes of the frontend
+ * are answered with {@code index.html}, see {@link FrontendResourceResolver}.
+ * <p>
+ * Served from disk ({@code frontend.location=file:...}), large files are sent with sendfile.
+ */
+@Configuration
+public class FrontendConfiguration implements WebMvcConfigurer {
+
+    /**
+     * Hashed assets change names when they change, so they never have to be revalidated
+     */
+    private static final CacheControl IMMUTABLE = new CacheControl() {
+        @Override
+        public String getHeaderValue() {
+            return "public, max-age=" + Duration.ofDays(365).getSeconds() + ", immutable";
+        }
+    };
+
+    private final String location;
+
+    public FrontendConfiguration(@Value("${frontend.location:classpath:/public/}") String location) {
+        this.location = location.endsWith("/") ? location : location + "/";
+    }
+
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        registry.addResourceHandler("/static/**")
+                .addResourceLocations(location + "static/")
+                .setCacheControl(IMMUTABLE)
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver())
+                .addResolver(new PathResourceResolver());
+
+        // Not cached by the resource chain: every route of the frontend would be kept, as index.html
+        registry.addResourceHandler("/**")
+                .addResourceLocations(location)
+                .setCacheControl(CacheControl.noCache())
+                .resourceChain(false)
+                .addResolver(new EncodedResourceResolver())
+                .addResolver(new FrontendResourceResolver());
+    }
+
+    /**
+     * Has the resource handlers write files with sendfile, once they are set up.
+     *
+     * @param minSize smallest file sent with sendfile
+     * @return post processor of the resource handler mapping
+     */
+    @Bean
+    public static BeanPostProcessor sendfilePostProcessor(
+            @Value("${frontend.sendfile-min-size:48KB}") DataSize minSize) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof SimpleUrlHandlerMapping && "resourceHandlerMapping".equals(beanName)) {
+                    ((SimpleUrlHandlerMapping) bean).getHandlerMap().values().forEach(handler -> {
+                        if (handler instanceof ResourceHttpRequestHandler)
+                            ((ResourceHttpRequestHandler) handler).setResourceHttpMessageConverter(
+                                    new SendfileResourceHttpMessageConverter(minSize.toBytes()));
+                    });
+                }
+                return bean;
+            }
+        };
+    }
+}
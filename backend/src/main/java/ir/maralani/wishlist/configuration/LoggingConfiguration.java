@@ -0,0 +1,44 @@
+package ir.maralani.wishlist.configuration;
+
+import ch.qos.logback.classic.LoggerContext;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import ir.maralani.wishlist.logging.AccessLogFilter;
+import ir.maralani.wishlist.logging.AsyncRingBufferAppender;
+import ir.maralani.wishlist.logging.AsyncRingBufferAppenderMetrics;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Wires the logging pipeline of {@code logback-spring.xml} into the application: the access log, and the
+ * metrics of the {@link AsyncRingBufferAppender}s writing everything in the background.
+ */
+@Configuration
+public class LoggingConfiguration {
+
+    /**
+     * Logs every request, ahead of the security filters so rejected requests are logged as well.
+     * The {@value AccessLogFilter#LOGGER_NAME} logger turns the lines on and off at runtime.
+     *
+     * @return registration of the access log filter
+     */
+    @Bean
+    @ConditionalOnProperty(name = "logging.access.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<AccessLogFilter> accessLogFilter() {
+        final FilterRegistrationBean<AccessLogFilter> registration = new FilterRegistrationBean<>(new AccessLogFilter());
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    @Bean
+    public MeterBinder asyncAppenderMetrics() {
+        return registry -> {
+            // Another SLF4J binding (e.g. in tests) has no appenders of ours to observe
+            if (LoggerFactory.getILoggerFactory() instanceof LoggerContext)
+                new AsyncRingBufferAppenderMetrics((LoggerContext) LoggerFactory.getILoggerFactory()).bindTo(registry);
+        };
+    }
+}
@@ -0,0 +1,56 @@
+package ir.maralani.wishlist.configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import ir.maralani.wishlist.metrics.RepositoryTimingInterceptor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.Repository;
+
+/**
+ * Instrumentation beyond what Spring Boot provides, which already times every request by endpoint
+ * ({@code http.server.requests}). Histograms and percentiles of the timers are configured in the
+ * {@code management.metrics.distribution.*} properties.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    /**
+     * Adds a {@link RepositoryTimingInterceptor} in front of the advice of every repository proxy, so it
+     * times the whole call. The registry is resolved on the first call of a repository, not as it is
+     * created: the registry binds beans which depend on repositories.
+     *
+     * @param meterRegistry registry of the timers
+     * @return post processor of the repositories
+     */
+    @Bean
+    public static BeanPostProcessor repositoryTimingPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof Repository && bean instanceof Advised) {
+                    final Advised repository = (Advised) bean;
+                    final Class<?> repositoryInterface = repositoryInterface(repository);
+                    if (repositoryInterface != null && !repository.isFrozen())
+                        repository.addAdvice(0, new RepositoryTimingInterceptor(
+                                meterRegistry::getObject, repositoryInterface));
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * @param repository proxy of a repository
+     * @return interface the repository was declared with, {@code null} if there is none
+     */
+    private static Class<?> repositoryInterface(Advised repository) {
+        for (Class<?> type : repository.getProxiedInterfaces()) {
+            if (type != Repository.class && Repository.class.isAssignableFrom(type))
+                return type;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,119 @@
+package ir.maralani.wishlist.configuration;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import ir.maralani.wishlist.Constants;
+import ir.maralani.wishlist.domain.Role;
+import ir.maralani.wishlist.repository.RoleRepository;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Configures the Hibernate second-level cache, which holds the {@link Role} reference data.
+ * <p>
+ * Regions are created up front with a bounded size, one for roles by id and one for role ids by name
+ * (the natural id), and publish the standard {@code cache.*} meters like the rest of the caches.
+ * Role edits made through Hibernate update the regions as they commit; the time to live bounds how long
+ * an edit made around the application (e.g. straight in the database) goes unnoticed.
+ * All roles are loaded once the application is ready, so the first logins don't pay for it.
+ */
+@Configuration
+public class RoleCacheConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(RoleCacheConfiguration.class);
+
+    private static final List<String> ROLE_REGIONS = Arrays.asList(
+            Constants.Persistence.ROLE_CACHE_REGION, Constants.Persistence.ROLE_NATURAL_ID_CACHE_REGION);
+
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager(@Value("${roles.cache.maximum-size:100}") int maximumSize,
+                                                @Value("${roles.cache.time-to-live:1h}") Duration timeToLive) {
+        // A manager of its own rather than the JVM-wide default, which every context in the JVM would share
+        final EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(
+                EhcacheCachingProvider.class.getName());
+        final CacheManager cacheManager = provider.getCacheManager(
+                URI.create("urn:wishlist:second-level-cache:" + UUID.randomUUID()),
+                new DefaultConfiguration(getClass().getClassLoader()));
+        for (String region : ROLE_REGIONS) {
+            cacheManager.createCache(region, Eh107Configuration.fromEhcacheCacheConfiguration(
+                    CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                            ResourcePoolsBuilder.heap(maximumSize))
+                            .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(timeToLive))));
+            cacheManager.enableStatistics(region, true);
+        }
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(
+            CacheManager secondLevelCacheManager,
+            @Value("${roles.cache.enabled:true}") boolean enabled) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, enabled);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+        };
+    }
+
+    /**
+     * Publishes the statistics of the role regions.
+     *
+     * @param secondLevelCacheManager cache manager holding the regions
+     * @return binder of the cache metrics
+     */
+    @Bean
+    public MeterBinder roleCacheMetrics(CacheManager secondLevelCacheManager) {
+        return registry -> ROLE_REGIONS.forEach(region -> JCacheMetrics.monitor(
+                registry, secondLevelCacheManager.getCache(region)));
+    }
+
+    /**
+     * Loads every role, and so puts them all in the cache.
+     */
+    @Bean
+    public RolePreloader rolePreloader(RoleRepository roleRepository) {
+        return new RolePreloader(roleRepository);
+    }
+
+    static class RolePreloader {
+
+        private final RoleRepository roleRepository;
+
+        RolePreloader(RoleRepository roleRepository) {
+            this.roleRepository = roleRepository;
+        }
+
+        @EventListener(ApplicationReadyEvent.class)
+        public void preload() {
+            long roles = 0;
+            for (Role role : roleRepository.findAll()) {
+                // Resolving by name caches the natural id as well
+                roleRepository.getByName(role.getName());
+                roles++;
+            }
+            log.info("Preloaded {} roles into the second-level cache.", roles);
+        }
+    }
+}
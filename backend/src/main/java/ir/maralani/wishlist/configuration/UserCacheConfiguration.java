@@ -0,0 +1,46 @@
+package ir.maralani.wishlist.configuration;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import ir.maralani.wishlist.security.BoundedUserCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.cache.NullUserCache;
+
+import java.time.Duration;
+
+/**
+ * Configures the {@link UserCache} consulted by {@link ir.maralani.wishlist.security.JwtUserDetailsService}
+ * before going to the datasource.
+ * <p>
+ * Any {@code UserCache} implementation can be plugged in here, by default a {@link BoundedUserCache}
+ * is used, or a {@link NullUserCache} when caching is disabled.
+ */
+@Configuration
+public class UserCacheConfiguration {
+
+    @Bean
+    public UserCache userCache(@Value("${security.user-cache.enabled:true}") boolean enabled,
+                               @Value("${security.user-cache.maximum-size:10000}") int maximumSize,
+                               @Value("${security.user-cache.time-to-live:5m}") Duration timeToLive) {
+        if (!enabled)
+            return new NullUserCache();
+
+        return new BoundedUserCache(maximumSize, timeToLive);
+    }
+
+    /**
+     * Publishes cache statistics, as long as the configured cache records any.
+     *
+     * @param userCache configured user cache
+     * @return binder of the cache metrics
+     */
+    @Bean
+    public MeterBinder userCacheMetrics(UserCache userCache) {
+        return registry -> {
+            if (userCache instanceof MeterBinder)
+                ((MeterBinder) userCache).bindTo(registry);
+        };
+    }
+}
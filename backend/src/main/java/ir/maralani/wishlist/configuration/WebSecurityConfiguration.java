@@ -1,7 +1,13 @@
 package ir.maralani.wishlist.configuration;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import ir.maralani.wishlist.jwt.JwtRequestFilter;
+import ir.maralani.wishlist.security.AdmissionControlledPasswordEncoder;
+import ir.maralani.wishlist.security.BcryptCostCalibrator;
+import ir.maralani.wishlist.security.PasswordHashingExecutor;
+import ir.maralani.wishlist.web.FrontendRoutes;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -28,6 +34,12 @@ public class WebSecurityConfiguration extends WebSecurityConfigurerAdapter {
     private UserDetailsService jwtUserDetailsService;
     @Autowired
     private JwtRequestFilter jwtRequestFilter;
+    @Autowired
+    private PasswordHashingExecutor passwordHashingExecutor;
+    @Autowired
+    private BcryptCostCalibrator bcryptCostCalibrator;
+    @Autowired
+    private MeterRegistry meterRegistry;
 
 
     @Autowired
@@ -40,7 +52,10 @@ public class WebSecurityConfiguration extends WebSecurityConfigurerAdapter {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        // Hash on a bounded executor, so a burst of logins can't starve the rest of the traffic,
+        // with the cost calibrated for this hardware; older hashes are upgraded as users log in
+        return new AdmissionControlledPasswordEncoder(new BCryptPasswordEncoder(bcryptCostCalibrator.getCost()),
+                passwordHashingExecutor, meterRegistry);
     }
 
     @Bean
@@ -62,7 +77,10 @@ public class WebSecurityConfiguration extends WebSecurityConfigurerAdapter {
                 .antMatchers("/api/authenticate").permitAll()
                 .antMatchers("/api/user/**").permitAll() // allow every URI, that begins with '/api/user/'
                 .antMatchers("/api/secured").authenticated()
-                .antMatchers("{_:^(?!index\\.html|api).*$}").permitAll()
+                // index.html, its assets and the routes answered with it, see FrontendConfiguration
+                .requestMatchers(FrontendRoutes.FRONTEND_REQUESTS).permitAll()
+                // Recordings take disk space and their dumps carry the environment, datasource credentials included
+                .requestMatchers(EndpointRequest.to("jfr", "passwordhashing")).hasAnyRole("ROOT", "ADMIN")
                 .anyRequest().authenticated()
                 //.anyRequest().authenticated() // protect all other requests
                 .and()
@@ -0,0 +1,102 @@
+package ir.maralani.wishlist.controller;
+
+import ir.maralani.wishlist.domain.User;
+import ir.maralani.wishlist.domain.UserPage;
+import ir.maralani.wishlist.domain.UserUpdate;
+import ir.maralani.wishlist.domain.UserVersion;
+import ir.maralani.wishlist.domain.UserView;
+import ir.maralani.wishlist.exception.UserVersionConflictException;
+import ir.maralani.wishlist.repository.UserListing;
+import ir.maralani.wishlist.service.UserService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * User administration.
+ * <p>
+ * Updates are checked against the version of the user they were made against (optimistic locking),
+ * so concurrent changes by two administrators never silently overwrite each other.
+ */
+@RestController
+@RequestMapping("/api/admin/users")
+@PreAuthorize("hasAnyRole('ROOT', 'ADMIN')")
+public class AdminUserController {
+
+    private final UserService userService;
+
+    /**
+     * Largest page size a client may ask for
+     */
+    private final int maxPageSize;
+
+    public AdminUserController(UserService userService,
+                               @Value("${users.listing.max-page-size:200}") int maxPageSize) {
+        this.userService = userService;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Lists users page by page. The first page is requested without a cursor, every following one
+     * with the {@code next} cursor of the page before it, along with the same order and filters.
+     */
+    @GetMapping
+    public UserPage getUsers(@RequestParam(name = "order", defaultValue = "CREATED") UserListing.Order order,
+                             @RequestParam(name = "cursor", required = false) String cursor,
+                             @RequestParam(name = "size", defaultValue = "50") int size,
+                             @RequestParam(name = "enabled", required = false) Boolean enabled,
+                             @RequestParam(name = "locked", required = false) Boolean locked,
+                             @RequestParam(name = "type", required = false) User.Type type,
+                             @RequestParam(name = "role", required = false) String role,
+                             @RequestParam(name = "exactCount", defaultValue = "false") boolean exactCount) {
+        UserListing listing = new UserListing()
+                .setOrder(order)
+                .setLimit(Math.max(1, Math.min(size, maxPageSize)))
+                .setEnabled(enabled)
+                .setLocked(locked)
+                .setType(type)
+                .setRole(role)
+                .after(cursor);
+
+        return userService.getPage(listing, exactCount);
+    }
+
+    /**
+     * Changes the account status of a user. The change carries the version of the user it was made
+     * against; if the user has been changed since, nothing is changed and {@code 409 Conflict} is answered
+     * along with the current version.
+     */
+    @PatchMapping("/{id}")
+    public ResponseEntity<UserView> updateUser(@PathVariable("id") long id, @Valid @RequestBody UserUpdate update) {
+        UserView user = userService.update(id, update);
+        return ResponseEntity.ok()
+                .eTag(UserVersion.of(user).getETag())
+                .body(user);
+    }
+
+    // The user was changed by someone else, tell the client which version to read before retrying
+    @ExceptionHandler(UserVersionConflictException.class)
+    public ResponseEntity<Map<String, Object>> handleVersionConflict(UserVersionConflictException e) {
+        Long currentVersion = e.getCurrentVersion();
+        if (currentVersion == null)
+            currentVersion = userService.getVersionById(e.getUserId()).map(UserVersion::getVersion).orElse(null);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("message", e.getMessage());
+        body.put("currentVersion", currentVersion);
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(body);
+    }
+}
@@ -1,13 +1,34 @@
 package ir.maralani.wishlist.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import ir.maralani.wishlist.domain.UserBatchRequest;
+import ir.maralani.wishlist.domain.UserLookup;
 import ir.maralani.wishlist.domain.User;
+import ir.maralani.wishlist.domain.UserVersion;
+import ir.maralani.wishlist.domain.UserView;
+import ir.maralani.wishlist.exception.BatchTooLargeException;
 import ir.maralani.wishlist.exception.UserNotFoundException;
 import ir.maralani.wishlist.repository.UserRepository;
+import ir.maralani.wishlist.service.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @RestController()
 @RequestMapping("/api")
@@ -18,15 +39,38 @@ public class BackendController {
     public static final String HELLO_TEXT = "Hello from Spring Boot Backend!";
     public static final String SECURED_TEXT = "Hello from the secured resource!";
 
+    /**
+     * Users may be kept by clients, but must be revalidated on every use
+     */
+    private static final CacheControl USER_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
     private final UserRepository userRepository;
+    private final UserService userService;
+
+    /**
+     * Serializer of {@link UserView}, resolved once instead of on every response
+     */
+    private final ObjectWriter userViewWriter;
+    private final ObjectWriter userLookupsWriter;
 
-    public BackendController(UserRepository userRepository) {
+    /**
+     * Most users looked up by a single batch request
+     */
+    private final int batchMaxSize;
+
+    public BackendController(UserRepository userRepository, UserService userService, ObjectMapper objectMapper,
+                             @Value("${users.batch.max-size:100}") int batchMaxSize) {
         this.userRepository = userRepository;
+        this.userService = userService;
+        this.userViewWriter = objectMapper.writerFor(UserView.class);
+        this.userLookupsWriter = objectMapper.writerFor(
+                objectMapper.getTypeFactory().constructCollectionType(List.class, UserLookup.class));
+        this.batchMaxSize = batchMaxSize;
     }
 
     @RequestMapping(path = "/hello")
     public String sayHello() {
-        LOG.info("GET called on /hello resource");
+        LOG.debug("GET called on /hello resource");
         return HELLO_TEXT;
     }
 
@@ -35,32 +79,72 @@ public class BackendController {
     public long addNewUser (@PathVariable("lastName") String lastName, @PathVariable("firstName") String firstName) {
         User savedUser = userRepository.save(new User());
 
-        LOG.info(savedUser.toString() + " successfully saved into DB");
+        LOG.info("User {} successfully saved into DB", savedUser.getId());
 
         return savedUser.getId();
     }
 
+    /**
+     * Answers with the user, tagged with its version. A client sending the tag it holds back
+     * ({@code If-None-Match}, or {@code If-Modified-Since}) gets {@code 304 Not Modified} while the user
+     * hasn't changed, decided by looking up the version alone.
+     */
     @GetMapping(path = "/user/{id}")
-    public User getUserById(@PathVariable("id") long id) {
+    public ResponseEntity<byte[]> getUserById(@PathVariable("id") long id, ServletWebRequest request)
+            throws JsonProcessingException {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null ||
+                request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null) {
+            Optional<UserVersion> version = userService.getVersionById(id);
+            if (version.isPresent() &&
+                    request.checkNotModified(version.get().getETag(), version.get().getLastModified())) {
+                request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, USER_CACHE_CONTROL.getHeaderValue());
+                return null;
+            }
+        }
+
+        UserView user = userService.getViewById(id).orElseThrow(
+                () -> new UserNotFoundException("The user with the id " + id + " couldn't be found in the database."));
+        LOG.debug("Read user with id {} from database.", id);
+
+        // Tagged by the version that was read, the user may have changed since the version was looked up
+        UserVersion version = UserVersion.of(user);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(USER_CACHE_CONTROL)
+                .eTag(version.getETag())
+                .lastModified(version.getLastModified())
+                .body(userViewWriter.writeValueAsBytes(user));
+    }
+
+    /**
+     * Looks up many users in one go, with a query per kind of key instead of a request per user.
+     * Results are in the order of the request, ids first, each marked whether it was found.
+     */
+    @PostMapping(path = "/user/batch")
+    public ResponseEntity<byte[]> getUsers(@RequestBody UserBatchRequest request) throws JsonProcessingException {
+        if (request.size() > batchMaxSize)
+            throw new BatchTooLargeException("At most " + batchMaxSize + " users can be looked up at once.");
+
+        Map<Long, UserView> byId = request.getIds().isEmpty() ?
+                Collections.emptyMap() : userService.getViewsById(request.getIds());
+        Map<String, UserView> byUsername = request.getUsernames().isEmpty() ?
+                Collections.emptyMap() : userService.getViewsByUsername(request.getUsernames());
 
-        return userRepository.findById(id).map(user -> {
-            LOG.info("Reading user with id " + id + " from database.");
-            return user;
-        }).orElseThrow(() -> new UserNotFoundException("The user with the id " + id + " couldn't be found in the database."));
+        List<UserLookup> lookups = new ArrayList<>(request.size());
+        for (Long id : request.getIds())
+            lookups.add(UserLookup.of(id, id != null ? byId.get(id) : null));
+        for (String username : request.getUsernames())
+            lookups.add(UserLookup.of(username, username != null ? byUsername.get(username) : null));
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(userLookupsWriter.writeValueAsBytes(lookups));
     }
 
     @RequestMapping(path="/secured", method = RequestMethod.GET)
     public @ResponseBody String getSecured() {
-        LOG.info("GET successfully called on /secured resource");
+        LOG.debug("GET successfully called on /secured resource");
         return SECURED_TEXT;
     }
 
-    // Forwards all routes to FrontEnd except: '/', '/index.html', '/api', '/api/**'
-    // Required because of 'mode: history' usage in frontend routing, see README for further details
-    @RequestMapping(value = "{_:^(?!index\\.html|api).*$}")
-    public String redirectApi() {
-        LOG.info("URL entered directly into the Browser, so we need to redirect...");
-        return "forward:/";
-    }
-
 }
@@ -1,10 +1,15 @@
 package ir.maralani.wishlist.controller;
 
+import ir.maralani.wishlist.exception.PasswordHashingSaturatedException;
+import ir.maralani.wishlist.jfr.PasswordCheckEvent;
 import ir.maralani.wishlist.jwt.JwtRequest;
 import ir.maralani.wishlist.jwt.JwtResponse;
 import ir.maralani.wishlist.jwt.JwtTokenUtil;
 import ir.maralani.wishlist.security.JwtUserDetailsService;
+import ir.maralani.wishlist.security.PasswordUpgradeService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -22,6 +27,8 @@ public class JwtAuthenticationController {
     private JwtTokenUtil jwtTokenUtil;
     @Autowired
     private JwtUserDetailsService userDetailsService;
+    @Autowired
+    private PasswordUpgradeService passwordUpgradeService;
 
     @RequestMapping(value = "/api/authenticate", method = RequestMethod.POST)
     public ResponseEntity<?> createAuthenticationToken(@RequestBody JwtRequest authenticationRequest) throws Exception {
@@ -29,15 +36,38 @@ public class JwtAuthenticationController {
         final UserDetails userDetails = userDetailsService
                 .loadUserByUsername(authenticationRequest.getUsername());
         final String token = jwtTokenUtil.generateToken(userDetails);
+        passwordUpgradeService.upgradeIfNeeded(userDetails, authenticationRequest.getPassword());
         return ResponseEntity.ok(new JwtResponse(token));
     }
     private void authenticate(String username, String password) throws Exception {
+        final PasswordCheckEvent event = new PasswordCheckEvent();
+        event.begin();
+        event.username = username;
+        event.outcome = PasswordCheckEvent.FAILED;
         try {
             authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(username, password));
+            event.outcome = PasswordCheckEvent.AUTHENTICATED;
         } catch (DisabledException e) {
+            event.outcome = PasswordCheckEvent.DISABLED;
             throw new Exception("USER_DISABLED", e);
         } catch (BadCredentialsException e) {
+            event.outcome = PasswordCheckEvent.BAD_CREDENTIALS;
             throw new Exception("INVALID_CREDENTIALS", e);
+        } catch (PasswordHashingSaturatedException e) {
+            event.outcome = PasswordCheckEvent.SATURATED;
+            throw e;
+        } finally {
+            event.end();
+            if (event.shouldCommit())
+                event.commit();
         }
     }
+
+    // Password hashing is saturated, ask the client to back off instead of piling up more logins
+    @ExceptionHandler(PasswordHashingSaturatedException.class)
+    public ResponseEntity<?> handlePasswordHashingSaturated(PasswordHashingSaturatedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter()))
+                .build();
+    }
 }
@@ -0,0 +1,54 @@
+package ir.maralani.wishlist.controller;
+
+import ir.maralani.wishlist.imports.ImportFormat;
+import ir.maralani.wishlist.imports.UserExportService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+
+/**
+ * Full export of users for administrators, streamed to the client as it is read from the database.
+ * <p>
+ * An export takes far longer than any other request, so it runs with a timeout of its own instead of the
+ * async request timeout shared by every request.
+ */
+@RestController
+@RequestMapping("/api/admin/users/export")
+@PreAuthorize("hasAnyRole('ROOT', 'ADMIN')")
+public class UserExportController {
+
+    private final UserExportService userExportService;
+
+    /**
+     * Longest time an export may take
+     */
+    private final long timeoutMillis;
+
+    public UserExportController(UserExportService userExportService,
+                                @Value("${users.export.timeout:30m}") Duration timeout) {
+        this.userExportService = userExportService;
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    @GetMapping
+    public WebAsyncTask<Void> exportUsers(@RequestParam(name = "format", defaultValue = "NDJSON") ImportFormat format,
+                                          HttpServletResponse response) {
+        response.setContentType(format.getMediaType().toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.builder("attachment")
+                .filename("users" + format.getExtension()).build().toString());
+        // Written on an async thread, the request thread is released right away
+        return new WebAsyncTask<>(timeoutMillis, () -> {
+            userExportService.export(format, response.getOutputStream());
+            return null;
+        });
+    }
+}
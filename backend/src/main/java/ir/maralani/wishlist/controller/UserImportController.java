@@ -0,0 +1,72 @@
+package ir.maralani.wishlist.controller;
+
+import ir.maralani.wishlist.exception.ImportJobNotFoundException;
+import ir.maralani.wishlist.imports.ImportFormat;
+import ir.maralani.wishlist.imports.UserImportJob;
+import ir.maralani.wishlist.imports.UserImportService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.Principal;
+
+/**
+ * Bulk import of users for administrators.
+ * <p>
+ * An upload is only spooled to disk on the request thread, the import itself runs in the background
+ * and is followed through the status resource the response points to.
+ */
+@RestController
+@RequestMapping("/api/admin/users/import")
+@PreAuthorize("hasAnyRole('ROOT', 'ADMIN')")
+public class UserImportController {
+
+    private final UserImportService userImportService;
+
+    public UserImportController(UserImportService userImportService) {
+        this.userImportService = userImportService;
+    }
+
+    @PostMapping(consumes = {ImportFormat.CSV_VALUE, ImportFormat.NDJSON_VALUE})
+    public ResponseEntity<UserImportJob> importUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                     HttpServletRequest request, Principal principal)
+            throws IOException {
+        // Can't fail, the mapping only accepts these
+        final ImportFormat format = ImportFormat.of(contentType).orElseThrow(IllegalStateException::new);
+
+        final Path file = Files.createTempFile("users-import-", format.getExtension());
+        final UserImportJob job;
+        try (InputStream body = request.getInputStream()) {
+            Files.copy(body, file, StandardCopyOption.REPLACE_EXISTING);
+            job = userImportService.submit(file, format, principal.getName());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+
+        return ResponseEntity
+                .accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(job.getId()).toUri())
+                .body(job);
+    }
+
+    @GetMapping("/{id}")
+    public UserImportJob getImport(@PathVariable("id") String id) {
+        return userImportService.getJob(id).orElseThrow(
+                () -> new ImportJobNotFoundException("The import job with the id " + id + " couldn't be found."));
+    }
+}
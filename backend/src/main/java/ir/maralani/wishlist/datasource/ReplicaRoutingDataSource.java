@@ -0,0 +1,242 @@
+package ir.maralani.wishlist.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends the work of read-only transactions to replicas of the database, everything else to the primary.
+ * <p>
+ * Connections are handed out lazily: the transaction manager asks for a connection before the transaction
+ * is marked read-only, so the physical connection is only taken, and the database chosen, once the first
+ * statement runs. Each replica has its own pool; a replica is picked round-robin or by the least active
+ * connections among the healthy ones.
+ * <p>
+ * A replica which can't hand out a connection is taken out of rotation until the next health check finds
+ * it answering again, and so is one lagging behind the primary by more than the allowed lag. With no
+ * healthy replica left, reads go to the primary.
+ */
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    /**
+     * How a replica is picked among the healthy ones
+     */
+    public enum Selection {
+        ROUND_ROBIN,
+        LEAST_CONNECTIONS
+    }
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final Selection selection;
+
+    /**
+     * Replication lag above which a replica is taken out of rotation, in seconds
+     */
+    private final double maxLagSeconds;
+
+    /**
+     * Query answering the replication lag of a replica in seconds
+     */
+    private final String lagQuery;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final ScheduledExecutorService healthChecker;
+
+    /**
+     * @param primary       data source of the primary
+     * @param replicas      data sources of the replicas, by name
+     * @param selection     how a replica is picked
+     * @param maxLag        replication lag above which a replica is taken out of rotation
+     * @param checkInterval interval of the health checks, zero to not check at all
+     * @param lagQuery      query answering the replication lag of a replica in seconds
+     */
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, Selection selection,
+                                    Duration maxLag, Duration checkInterval, String lagQuery) {
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicas.size());
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+        this.selection = selection;
+        this.maxLagSeconds = maxLag.toMillis() / 1000d;
+        this.lagQuery = lagQuery;
+        setTargetDataSource(new Router());
+
+        if (checkInterval.isZero() || this.replicas.isEmpty()) {
+            this.healthChecker = null;
+        } else {
+            this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "replica-health-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthChecker.scheduleWithFixedDelay(this::checkReplicas,
+                    checkInterval.toMillis(), checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Checks every replica for availability and replication lag, and takes it in or out of rotation.
+     */
+    void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                final double lag = resultSet.next() ? resultSet.getDouble(1) : 0;
+                if (lag > maxLagSeconds)
+                    replica.setHealthy(false, "lagging " + lag + "s behind");
+                else
+                    replica.setHealthy(true, "lagging " + lag + "s behind");
+            } catch (SQLException | RuntimeException e) {
+                replica.setHealthy(false, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return connection to a healthy replica in read-only transactions, to the primary otherwise
+     * @throws SQLException if the primary can't hand out a connection either
+     */
+    Connection route() throws SQLException {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            final Replica replica = selectReplica();
+            if (replica != null) {
+                try {
+                    return replica.dataSource.getConnection();
+                } catch (SQLException e) {
+                    replica.setHealthy(false, e.getMessage());
+                }
+            }
+        }
+        return primary.getConnection();
+    }
+
+    /**
+     * @return a healthy replica, {@code null} if there is none
+     */
+    private Replica selectReplica() {
+        final int count = replicas.size();
+        if (count == 0)
+            return null;
+
+        if (selection == Selection.LEAST_CONNECTIONS) {
+            Replica selected = null;
+            int leastConnections = Integer.MAX_VALUE;
+            for (Replica replica : replicas) {
+                if (!replica.healthy)
+                    continue;
+                final int connections = replica.activeConnections();
+                if (connections < leastConnections) {
+                    selected = replica;
+                    leastConnections = connections;
+                }
+            }
+            return selected;
+        }
+
+        final int start = Math.floorMod(nextReplica.getAndIncrement(), count);
+        for (int i = 0; i < count; i++) {
+            final Replica replica = replicas.get((start + i) % count);
+            if (replica.healthy)
+                return replica;
+        }
+        return null;
+    }
+
+    /**
+     * Stops the health checks and closes the pools of the primary and the replicas.
+     */
+    @Override
+    public void close() {
+        if (healthChecker != null)
+            healthChecker.shutdownNow();
+        for (Replica replica : replicas)
+            closeQuietly(replica.dataSource);
+        closeQuietly(primary);
+    }
+
+    private static void closeQuietly(DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) dataSource).close();
+            } catch (Exception e) {
+                log.warn("Could not close data source.", e);
+            }
+        }
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+
+        /**
+         * Whether the replica is in rotation. Replicas start in rotation, the first failure takes them out.
+         */
+        private volatile boolean healthy = true;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        private void setHealthy(boolean healthy, String reason) {
+            if (this.healthy == healthy)
+                return;
+            this.healthy = healthy;
+            if (healthy)
+                log.info("Replica {} is back in rotation, {}.", name, reason);
+            else
+                log.warn("Replica {} is out of rotation, {}.", name, reason);
+        }
+
+        private int activeConnections() {
+            if (dataSource instanceof HikariDataSource) {
+                final HikariPoolMXBean pool = ((HikariDataSource) dataSource).getHikariPoolMXBean();
+                return pool != null ? pool.getActiveConnections() : 0;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Physical data source behind the lazy connections.
+     */
+    private class Router extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return route();
+        }
+
+        /**
+         * Routed like {@link #getConnection()}. The pools of the primary and the replicas connect with the
+         * credentials they are configured with, the given ones are not used.
+         */
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return route();
+        }
+    }
+}
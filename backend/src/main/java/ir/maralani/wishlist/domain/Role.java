@@ -1,6 +1,13 @@
 package ir.maralani.wishlist.domain;
 
 import ir.maralani.wishlist.Constants;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
@@ -12,18 +19,28 @@ import java.util.Set;
 
 /**
  * Simple RoleName in the system as is usually defined in RBAC.
+ * <p>
+ * Roles are a handful of rarely changing rows, so they are kept in the second-level cache,
+ * by id and by name, see {@link ir.maralani.wishlist.configuration.RoleCacheConfiguration}.
  *
  * @author Aarash Yaadegarnia
  */
 @Entity
 @Table(name = "roles")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Constants.Persistence.ROLE_CACHE_REGION)
+@NaturalIdCache(region = Constants.Persistence.ROLE_NATURAL_ID_CACHE_REGION)
 public class Role implements Serializable {
 
     /**
      * Id of the entity
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "role_id_generator")
+    @GenericGenerator(name = "role_id_generator", strategy = Constants.Persistence.ID_GENERATOR_STRATEGY, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = Constants.Persistence.ID_SEQUENCE),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = Constants.Persistence.ID_BLOCK_SIZE_VALUE),
+            @Parameter(name = SequenceStyleGenerator.OPT_PARAM, value = Constants.Persistence.ID_OPTIMIZER)
+    })
     private Long id;
 
     /**
@@ -32,6 +49,7 @@ public class Role implements Serializable {
     @NotBlank(message = "{role.name.null}")
     @Pattern(regexp = Constants.Validation.ROLE_NAME_REGEX, message = "{role.name.pattern}")
     @Size(min = Constants.Validation.ROLE_NAME_SIZE_MIN, max = Constants.Validation.ROLE_NAME_PREFIXED_SIZE_MAX, message = "{role.name.size}")
+    @NaturalId(mutable = true)
     @Column(length = Constants.Validation.ROLE_NAME_PREFIXED_SIZE_MAX, unique = true, nullable = false)
     private String name;
 
@@ -59,6 +77,13 @@ public class Role implements Serializable {
     @OneToMany(cascade = CascadeType.PERSIST, fetch = FetchType.LAZY, mappedBy = "role")
     private Set<User> users;
 
+    /**
+     * Incremented on every update, an update of a role changed by someone else in the meantime fails.
+     */
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     /**
      * @return {@code id}
      * @see #id
@@ -67,6 +92,14 @@ public class Role implements Serializable {
         return id;
     }
 
+    /**
+     * @return {@code version}
+     * @see #version
+     */
+    public Long getVersion() {
+        return version;
+    }
+
     /**
      * @return {@code name}
      * @see #name
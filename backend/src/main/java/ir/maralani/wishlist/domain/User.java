@@ -3,7 +3,13 @@ package ir.maralani.wishlist.domain;
 import ir.maralani.wishlist.Constants;
 import ir.maralani.wishlist.domain.converter.LocaleAttributeConverter;
 import ir.maralani.wishlist.domain.converter.TimeZoneAttributeConverter;
+import ir.maralani.wishlist.security.UserCacheInvalidationListener;
 import ir.maralani.wishlist.validator.PhoneNumber;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.*;
@@ -16,20 +22,37 @@ import java.util.TimeZone;
 /**
  * Main actor of the system.
  * Each user is assigned a {@link Role}.
+ * <p>
+ * The role is loaded lazily; queries which need it fetch it along with the user through
+ * the {@value #ROLE_GRAPH} entity graph.
+ * <p>
+ * Users are versioned for optimistic locking, and updates only write the columns that changed.
  *
  * @author Aarash Yaadegarnia
  * @author Sajad Hayatlou
  */
 @Entity
-@EntityListeners(AuditingEntityListener.class)
+@DynamicUpdate
+@NamedEntityGraph(name = User.ROLE_GRAPH, attributeNodes = @NamedAttributeNode("role"))
+@EntityListeners({AuditingEntityListener.class, UserCacheInvalidationListener.class})
 @Table(name = "users")
 public class User extends AuthoringAndMutatingAudit implements Serializable {
 
+    /**
+     * Entity graph fetching the role along with the user
+     */
+    public static final String ROLE_GRAPH = "User.role";
+
     /**
      * Id of an entity
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_id_generator")
+    @GenericGenerator(name = "user_id_generator", strategy = Constants.Persistence.ID_GENERATOR_STRATEGY, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = Constants.Persistence.ID_SEQUENCE),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = Constants.Persistence.ID_BLOCK_SIZE_VALUE),
+            @Parameter(name = SequenceStyleGenerator.OPT_PARAM, value = Constants.Persistence.ID_OPTIMIZER)
+    })
     private Long id;
 
     /**
@@ -141,12 +164,12 @@ public class User extends AuthoringAndMutatingAudit implements Serializable {
 
     /**
      * {@linkplain Role} that this user belongs to.
+     * Unless fetched through {@link #ROLE_GRAPH}, it is resolved by id on first access,
+     * from the second-level cache.
      */
     @NotNull(message = "{user.role.null}")
-    @ManyToOne(optional = false)
-    @JoinTable(name = "user_role",
-            joinColumns = {@JoinColumn(name = "user_id")},
-            inverseJoinColumns = {@JoinColumn(name = "role_id")})
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "role_id", nullable = false)
     private Role role;
 
     /**
@@ -155,6 +178,13 @@ public class User extends AuthoringAndMutatingAudit implements Serializable {
     @Size(max = Constants.Validation.USER_DESC_SIZE_MAX, message = "{user.description.size}")
     private String description;
 
+    /**
+     * Incremented on every update, an update of a user changed by someone else in the meantime fails.
+     */
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     /**
      * @return {@code id}
      * @see #id
@@ -163,6 +193,14 @@ public class User extends AuthoringAndMutatingAudit implements Serializable {
         return id;
     }
 
+    /**
+     * @return {@code version}
+     * @see #version
+     */
+    public Long getVersion() {
+        return version;
+    }
+
     /**
      * @return {@code type}
      * @see #type
@@ -429,6 +467,7 @@ public class User extends AuthoringAndMutatingAudit implements Serializable {
     public String toString() {
         return "User{" +
                 "id=" + id +
+                ", version=" + version +
                 ", username='" + username + '\'' +
                 ", firstName='" + firstName + '\'' +
                 ", lastName='" + lastName + '\'' +
@@ -439,7 +478,8 @@ public class User extends AuthoringAndMutatingAudit implements Serializable {
                 ", expirationDate=" + expirationDate +
                 ", locale=" + locale +
                 ", timeZone=" + timeZone +
-                ", role=" + role +
+                // Printing a role which was never loaded would load it, or fail once detached
+                ", role=" + (Hibernate.isInitialized(role) ? role : "?") +
                 ", createdBy='" + getCreatedBy() + '\'' +
                 ", createdDate=" + getCreatedDate() +
                 ", lastModifiedBy='" + getLastModifiedBy() + '\'' +
@@ -0,0 +1,45 @@
+package ir.maralani.wishlist.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Users to look up at once, by id, by username or both.
+ */
+public class UserBatchRequest {
+
+    private List<Long> ids = new ArrayList<>();
+    private List<String> usernames = new ArrayList<>();
+
+    //need default constructor for JSON Parsing
+    public UserBatchRequest() {
+    }
+
+    public UserBatchRequest(List<Long> ids, List<String> usernames) {
+        this.setIds(ids);
+        this.setUsernames(usernames);
+    }
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Long> ids) {
+        this.ids = ids != null ? ids : new ArrayList<>();
+    }
+
+    public List<String> getUsernames() {
+        return usernames;
+    }
+
+    public void setUsernames(List<String> usernames) {
+        this.usernames = usernames != null ? usernames : new ArrayList<>();
+    }
+
+    /**
+     * @return number of requested users
+     */
+    public int size() {
+        return ids.size() + usernames.size();
+    }
+}
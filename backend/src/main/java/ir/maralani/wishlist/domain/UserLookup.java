@@ -0,0 +1,49 @@
+package ir.maralani.wishlist.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of looking up a single user of a batch, found or not.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserLookup {
+
+    /**
+     * Requested id or username
+     */
+    private final Object key;
+
+    private final boolean found;
+
+    /**
+     * The user, {@code null} if not found
+     */
+    private final UserView user;
+
+    private UserLookup(Object key, UserView user) {
+        this.key = key;
+        this.found = user != null;
+        this.user = user;
+    }
+
+    /**
+     * @param key  requested id or username
+     * @param user the user, {@code null} if there is none
+     * @return outcome of the lookup
+     */
+    public static UserLookup of(Object key, UserView user) {
+        return new UserLookup(key, user);
+    }
+
+    public Object getKey() {
+        return key;
+    }
+
+    public boolean isFound() {
+        return found;
+    }
+
+    public UserView getUser() {
+        return user;
+    }
+}
@@ -0,0 +1,49 @@
+package ir.maralani.wishlist.domain;
+
+import java.util.List;
+
+/**
+ * A page of the user listing, along with the cursor of the next page.
+ */
+public class UserPage {
+
+    private final List<UserView> items;
+
+    /**
+     * Cursor of the next page, {@code null} on the last page
+     */
+    private final String next;
+
+    /**
+     * Number of users matching the filters, exact or estimated
+     */
+    private final long total;
+
+    /**
+     * Whether {@link #total} was counted or estimated
+     */
+    private final boolean totalExact;
+
+    public UserPage(List<UserView> items, String next, long total, boolean totalExact) {
+        this.items = items;
+        this.next = next;
+        this.total = total;
+        this.totalExact = totalExact;
+    }
+
+    public List<UserView> getItems() {
+        return items;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public boolean isTotalExact() {
+        return totalExact;
+    }
+}
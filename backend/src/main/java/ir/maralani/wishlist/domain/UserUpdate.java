@@ -0,0 +1,102 @@
+package ir.maralani.wishlist.domain;
+
+import ir.maralani.wishlist.Constants;
+
+import javax.validation.constraints.Future;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.time.ZonedDateTime;
+
+/**
+ * Changes to the account status of a {@link User}, made by an administrator. Only the given attributes
+ * change; the rest is left as it is, as are attributes given with their current value.
+ * <p>
+ * Carries the version the change was made against, the change is rejected if the user has been changed
+ * since.
+ */
+public class UserUpdate {
+
+    /**
+     * Version of the user the change was made against, as read along with it
+     */
+    @NotNull(message = "{user.version.null}")
+    private Long version;
+
+    private Boolean enabled;
+    private Boolean locked;
+    private Boolean credentialExpired;
+    @Future(message = "{user.expiration_date.future}")
+    private ZonedDateTime expirationDate;
+
+    /**
+     * Whether the expiration date is cleared, i.e. the user no longer expires
+     */
+    private boolean neverExpires;
+
+    @Size(max = Constants.Validation.USER_DESC_SIZE_MAX, message = "{user.description.size}")
+    private String description;
+
+    //need default constructor for JSON Parsing
+    public UserUpdate() {
+    }
+
+    public UserUpdate(Long version) {
+        this.setVersion(version);
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Boolean getLocked() {
+        return locked;
+    }
+
+    public void setLocked(Boolean locked) {
+        this.locked = locked;
+    }
+
+    public Boolean getCredentialExpired() {
+        return credentialExpired;
+    }
+
+    public void setCredentialExpired(Boolean credentialExpired) {
+        this.credentialExpired = credentialExpired;
+    }
+
+    public ZonedDateTime getExpirationDate() {
+        return expirationDate;
+    }
+
+    public void setExpirationDate(ZonedDateTime expirationDate) {
+        this.expirationDate = expirationDate;
+    }
+
+    public boolean isNeverExpires() {
+        return neverExpires;
+    }
+
+    public void setNeverExpires(boolean neverExpires) {
+        this.neverExpires = neverExpires;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+}
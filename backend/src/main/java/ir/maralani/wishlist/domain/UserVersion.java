@@ -0,0 +1,62 @@
+package ir.maralani.wishlist.domain;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Just enough of a {@link User} to tell whether a copy held by a client is still current.
+ * <p>
+ * Selected by a constructor expression on its own, so a conditional request for an unchanged user is
+ * answered without loading or serializing it. The role is exposed by name, renaming a role is not seen
+ * by the users holding it; it's reference data, edited rarely and by hand.
+ */
+public class UserVersion {
+
+    private final long id;
+    private final long version;
+    private final ZonedDateTime lastModifiedDate;
+
+    public UserVersion(Long id, Long version, ZonedDateTime lastModifiedDate) {
+        this.id = id;
+        this.version = version;
+        this.lastModifiedDate = lastModifiedDate;
+    }
+
+    /**
+     * @param user projection of the user
+     * @return version of the projected user
+     */
+    public static UserVersion of(UserView user) {
+        return new UserVersion(user.getId(), user.getVersion(), user.getLastModifiedDate());
+    }
+
+    /**
+     * The version changes with every update made through Hibernate, the modification date catches updates
+     * made around it (e.g. straight in the database) as long as they maintain it.
+     *
+     * @return strong entity tag, quoted
+     */
+    public String getETag() {
+        final long modified = lastModifiedDate != null ?
+                lastModifiedDate.toEpochSecond() * 1_000_000 + lastModifiedDate.getNano() / 1000 : 0;
+        return "\"" + id + "-" + version + "-" + Long.toString(modified, 36) + "\"";
+    }
+
+    /**
+     * @return modification date in epoch millis, -1 if unknown
+     */
+    public long getLastModified() {
+        return lastModifiedDate != null ? lastModifiedDate.toInstant().toEpochMilli() : -1;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public ZonedDateTime getLastModifiedDate() {
+        return lastModifiedDate;
+    }
+}
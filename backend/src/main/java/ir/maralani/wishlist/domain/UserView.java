@@ -0,0 +1,154 @@
+package ir.maralani.wishlist.domain;
+
+import java.time.ZonedDateTime;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Read-only projection of a {@link User}, holding only what is exposed through the API.
+ * <p>
+ * Selected by a constructor expression, so reading one neither loads nor tracks an entity,
+ * and there is nothing (password, creator and modifier, role graph) to leak when it is serialized.
+ * The creation and last modification dates are exposed, the admin listing orders and pages users by them.
+ */
+public class UserView {
+
+    private final Long id;
+    private final User.Type type;
+    private final String username;
+    private final String firstName;
+    private final String lastName;
+    private final String email;
+    private final String phone;
+    private final Boolean enabled;
+    private final Boolean locked;
+    private final ZonedDateTime expirationDate;
+
+    /**
+     * Language tag of the preferred locale
+     */
+    private final String locale;
+
+    /**
+     * Id of the time zone
+     */
+    private final String timeZone;
+
+    private final String description;
+
+    /**
+     * Name of the {@link Role}
+     */
+    private final String role;
+
+    private final ZonedDateTime createdDate;
+    private final ZonedDateTime lastModifiedDate;
+
+    /**
+     * Version the user was read at, to be sent along with updates of the user
+     */
+    private final Long version;
+
+    public UserView(Long id, User.Type type, String username, String firstName, String lastName, String email,
+                    String phone, Boolean enabled, Boolean locked, ZonedDateTime expirationDate, Locale locale,
+                    TimeZone timeZone, String description, String role, ZonedDateTime createdDate,
+                    ZonedDateTime lastModifiedDate, Long version) {
+        this.id = id;
+        this.type = type;
+        this.username = username;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.email = email;
+        this.phone = phone;
+        this.enabled = enabled;
+        this.locked = locked;
+        this.expirationDate = expirationDate;
+        this.locale = locale != null ? locale.toLanguageTag() : null;
+        this.timeZone = timeZone != null ? timeZone.getID() : null;
+        this.description = description;
+        this.role = role;
+        this.createdDate = createdDate;
+        this.lastModifiedDate = lastModifiedDate;
+        this.version = version;
+    }
+
+    /**
+     * @param user user to project
+     * @return projection of the user
+     */
+    public static UserView of(User user) {
+        return new UserView(user.getId(), user.getType(), user.getUsername(), user.getFirstName(),
+                user.getLastName(), user.getEmail(), user.getPhone(), user.getEnabled(), user.getLocked(),
+                user.getExpirationDate(), user.getLocale(), user.getTimeZone(), user.getDescription(),
+                user.getRole() != null ? user.getRole().getName() : null, user.getCreatedDate(),
+                user.getLastModifiedDate(), user.getVersion());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public User.Type getType() {
+        return type;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getPhone() {
+        return phone;
+    }
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public Boolean getLocked() {
+        return locked;
+    }
+
+    public ZonedDateTime getExpirationDate() {
+        return expirationDate;
+    }
+
+    public String getLocale() {
+        return locale;
+    }
+
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public ZonedDateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public ZonedDateTime getLastModifiedDate() {
+        return lastModifiedDate;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+}
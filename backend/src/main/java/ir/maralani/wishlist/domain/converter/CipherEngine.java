@@ -0,0 +1,172 @@
+package ir.maralani.wishlist.domain.converter;
+
+import ir.maralani.wishlist.Constants;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Thread-safe, allocation-light AES engine behind {@link JPACryptoConverter}.
+ * <p>
+ * Key material is prepared once and every thread keeps its own, already initialized {@link Cipher}
+ * instances, so converting an attribute costs neither a provider lookup nor a key setup.
+ * Base64 text is encoded from and decoded into the cipher buffers directly, without intermediate copies.
+ * <p>
+ * In authenticated mode ({@link Constants.Crypto#AUTHENTICATED_ALGORITHM}) each value is encrypted with
+ * its own random IV and stored as {@link #AUTHENTICATED_PREFIX} followed by the Base64 of IV and ciphertext.
+ * Values written before switching to authenticated mode don't carry the prefix and are still decrypted
+ * with {@link Constants.Crypto#LEGACY_ALGORITHM}, so existing rows migrate as they are rewritten.
+ */
+public class CipherEngine {
+
+    /**
+     * Marks values encrypted in authenticated mode. Never a part of Base64 output.
+     */
+    static final String AUTHENTICATED_PREFIX = "g1:";
+
+    private static final int GCM_IV_LENGTH = 12;
+    private static final int GCM_TAG_LENGTH_BITS = 128;
+
+    private static final Base64.Encoder ENCODER = Base64.getEncoder();
+    private static final Base64.Decoder DECODER = Base64.getDecoder();
+
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(SecureRandom::new);
+
+    /**
+     * Whether new values are written in authenticated mode
+     */
+    private final boolean authenticated;
+
+    /**
+     * Precomputed key material
+     */
+    private final SecretKeySpec key;
+
+    /**
+     * Per-thread ciphers of the unauthenticated transformation, initialized once and reused
+     */
+    private final ThreadLocal<Cipher> encryptors;
+    private final ThreadLocal<Cipher> decryptors;
+
+    /**
+     * Per-thread GCM ciphers, re-initialized with the IV of every value
+     */
+    private final ThreadLocal<Cipher> authenticatedCiphers;
+
+    /**
+     * @param algorithm cipher transformation used for new values
+     * @param key       raw AES key
+     */
+    public CipherEngine(String algorithm, byte[] key) {
+        this.authenticated = Constants.Crypto.AUTHENTICATED_ALGORITHM.equalsIgnoreCase(algorithm);
+        this.key = new SecretKeySpec(key, "AES");
+
+        final String unauthenticatedAlgorithm = authenticated ? Constants.Crypto.LEGACY_ALGORITHM : algorithm;
+        this.encryptors = ThreadLocal.withInitial(() -> newCipher(unauthenticatedAlgorithm, Cipher.ENCRYPT_MODE));
+        this.decryptors = ThreadLocal.withInitial(() -> newCipher(unauthenticatedAlgorithm, Cipher.DECRYPT_MODE));
+        this.authenticatedCiphers = ThreadLocal.withInitial(
+                () -> newCipher(Constants.Crypto.AUTHENTICATED_ALGORITHM, 0));
+    }
+
+    /**
+     * @param plain plain text
+     * @return Base64 encoded cipher text
+     */
+    public String encrypt(String plain) {
+        final byte[] input = plain.getBytes(StandardCharsets.UTF_8);
+        return authenticated ? encryptAuthenticated(input) : encryptUnauthenticated(input);
+    }
+
+    /**
+     * @param stored Base64 encoded cipher text, as produced by {@link #encrypt(String)}
+     * @return plain text
+     */
+    public String decrypt(String stored) {
+        final byte[] text = stored.getBytes(StandardCharsets.ISO_8859_1);
+        return stored.startsWith(AUTHENTICATED_PREFIX) ?
+                decryptAuthenticated(text) : decryptUnauthenticated(text);
+    }
+
+    private String encryptUnauthenticated(byte[] input) {
+        final Cipher cipher = encryptors.get();
+        try {
+            // doFinal resets the cipher to its initialized state, ready for the next value
+            return new String(ENCODER.encode(cipher.doFinal(input)), StandardCharsets.ISO_8859_1);
+        } catch (GeneralSecurityException e) {
+            encryptors.remove();
+            throw new IllegalStateException("Could not encrypt attribute.", e);
+        }
+    }
+
+    private String decryptUnauthenticated(byte[] text) {
+        final Cipher cipher = decryptors.get();
+        try {
+            final ByteBuffer raw = DECODER.decode(ByteBuffer.wrap(text));
+            return new String(cipher.doFinal(raw.array(), raw.arrayOffset() + raw.position(), raw.remaining()),
+                    StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            decryptors.remove();
+            throw new IllegalStateException("Could not decrypt attribute.", e);
+        }
+    }
+
+    private String encryptAuthenticated(byte[] input) {
+        final Cipher cipher = authenticatedCiphers.get();
+        try {
+            final byte[] iv = new byte[GCM_IV_LENGTH];
+            RANDOM.get().nextBytes(iv);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH_BITS, iv));
+
+            // IV and cipher text share a single buffer, which is then encoded in one go
+            final byte[] output = new byte[GCM_IV_LENGTH + cipher.getOutputSize(input.length)];
+            System.arraycopy(iv, 0, output, 0, GCM_IV_LENGTH);
+            final int length = GCM_IV_LENGTH + cipher.doFinal(input, 0, input.length, output, GCM_IV_LENGTH);
+            return AUTHENTICATED_PREFIX + new String(
+                    ENCODER.encode(ByteBuffer.wrap(output, 0, length)).array(), StandardCharsets.ISO_8859_1);
+        } catch (GeneralSecurityException e) {
+            authenticatedCiphers.remove();
+            throw new IllegalStateException("Could not encrypt attribute.", e);
+        }
+    }
+
+    private String decryptAuthenticated(byte[] text) {
+        final Cipher cipher = authenticatedCiphers.get();
+        try {
+            final int prefixLength = AUTHENTICATED_PREFIX.length();
+            final ByteBuffer raw = DECODER.decode(ByteBuffer.wrap(text, prefixLength, text.length - prefixLength));
+            final byte[] buffer = raw.array();
+            final int offset = raw.arrayOffset() + raw.position();
+            if (raw.remaining() < GCM_IV_LENGTH)
+                throw new IllegalArgumentException("Attribute is too short to carry an IV.");
+
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH_BITS, buffer, offset, GCM_IV_LENGTH));
+            return new String(cipher.doFinal(buffer, offset + GCM_IV_LENGTH, raw.remaining() - GCM_IV_LENGTH),
+                    StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            authenticatedCiphers.remove();
+            throw new IllegalStateException("Could not decrypt attribute.", e);
+        }
+    }
+
+    /**
+     * @param algorithm cipher transformation
+     * @param mode      mode to initialize the cipher with, {@code 0} to leave it uninitialized
+     * @return new cipher
+     */
+    private Cipher newCipher(String algorithm, int mode) {
+        try {
+            final Cipher cipher = Cipher.getInstance(algorithm);
+            if (mode != 0)
+                cipher.init(mode, key);
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not initialize " + algorithm + " cipher.", e);
+        }
+    }
+}
@@ -2,77 +2,114 @@
 
 package ir.maralani.wishlist.domain.converter;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import ir.maralani.wishlist.Constants;
+import ir.maralani.wishlist.jfr.AttributeCryptoEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
-import org.springframework.util.Base64Utils;
 
-import javax.crypto.Cipher;
-import javax.crypto.spec.SecretKeySpec;
 import javax.persistence.AttributeConverter;
 import javax.persistence.Converter;
 import java.nio.charset.StandardCharsets;
-import java.security.Key;
+import java.util.concurrent.TimeUnit;
 
 import static ir.maralani.wishlist.Constants.Crypto.ALGORITHM_PROPERTY;
 import static ir.maralani.wishlist.Constants.Crypto.KEY_PROPERTY;
 
 /**
  * Encrypts and decrypts CLOB stored data to/from plain text format.
+ * <p>
+ * The actual work is done by a {@link CipherEngine}, which is set up once for the configured
+ * algorithm and key and is safe to share between all threads loading or storing rows.
+ * Every conversion is timed ({@code crypto.attribute}), by operation,
+ * and recorded as an {@link AttributeCryptoEvent} for the flight recorder.
  */
 @Component
 @Converter
 public class JPACryptoConverter implements AttributeConverter<String, String> {
 
-    private Logger logger = LoggerFactory.getLogger(JPACryptoConverter.class);
+    private static final String ENCRYPT = "encrypt";
+    private static final String DECRYPT = "decrypt";
 
-    private static String ALGORITHM = null;
-    private static byte[] KEY = null;
+    private Logger logger = LoggerFactory.getLogger(JPACryptoConverter.class);
 
-    private final Environment environment;
+    private final CipherEngine engine;
+    private final Timer encryptTimer;
+    private final Timer decryptTimer;
 
     @Autowired
-    public JPACryptoConverter(Environment environment) {
-        this.environment = environment;
+    public JPACryptoConverter(Environment environment, MeterRegistry meterRegistry) {
         String key;
         String algorithm;
-        algorithm = this.environment.getProperty(ALGORITHM_PROPERTY);
-        key = this.environment.getProperty(KEY_PROPERTY);
+        algorithm = environment.getProperty(ALGORITHM_PROPERTY);
+        key = environment.getProperty(KEY_PROPERTY);
 
         if (algorithm == null || key == null) {
             logger.warn("Could not encryption properties, using insecure encryption key.");
-            algorithm = "AES/ECB/PKCS5Padding";
+            algorithm = Constants.Crypto.LEGACY_ALGORITHM;
             key = Constants.Crypto.DEFAULT_KEY;
         }
 
-        ALGORITHM = algorithm;
-        KEY = key.getBytes();
+        this.engine = new CipherEngine(algorithm, key.getBytes(StandardCharsets.UTF_8));
+        this.encryptTimer = timer(meterRegistry, ENCRYPT);
+        this.decryptTimer = timer(meterRegistry, DECRYPT);
     }
 
     @Override
     public String convertToDatabaseColumn(String sensitive) {
-        Key key = new SecretKeySpec(KEY, "AES");
+        if (sensitive == null)
+            return null;
+        final AttributeCryptoEvent event = begin(ENCRYPT, sensitive);
+        final long start = System.nanoTime();
         try {
-            final Cipher c = Cipher.getInstance(ALGORITHM);
-            c.init(Cipher.ENCRYPT_MODE, key);
-            return new String(Base64Utils.encode(c.doFinal(sensitive.getBytes())), StandardCharsets.UTF_8);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+            final String encrypted = engine.encrypt(sensitive);
+            event.outcome = AttributeCryptoEvent.SUCCEEDED;
+            return encrypted;
+        } finally {
+            encryptTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            commit(event);
         }
     }
 
     @Override
     public String convertToEntityAttribute(String sensitive) {
-        Key key = new SecretKeySpec(KEY, "AES");
+        if (sensitive == null)
+            return null;
+        final AttributeCryptoEvent event = begin(DECRYPT, sensitive);
+        final long start = System.nanoTime();
         try {
-            final Cipher c = Cipher.getInstance(ALGORITHM);
-            c.init(Cipher.DECRYPT_MODE, key);
-            return new String(c.doFinal(Base64Utils.decode(sensitive.getBytes(StandardCharsets.UTF_8))));
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+            final String decrypted = engine.decrypt(sensitive);
+            event.outcome = AttributeCryptoEvent.SUCCEEDED;
+            return decrypted;
+        } finally {
+            decryptTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            commit(event);
         }
     }
+
+    private static AttributeCryptoEvent begin(String operation, String value) {
+        final AttributeCryptoEvent event = new AttributeCryptoEvent();
+        event.begin();
+        event.operation = operation;
+        event.length = value.length();
+        event.outcome = AttributeCryptoEvent.FAILED;
+        return event;
+    }
+
+    private static void commit(AttributeCryptoEvent event) {
+        event.end();
+        if (event.shouldCommit())
+            event.commit();
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("crypto.attribute")
+                .tag("operation", operation)
+                .description("Time spent encrypting or decrypting an attribute")
+                .register(meterRegistry);
+    }
 }
@@ -0,0 +1,19 @@
+package ir.maralani.wishlist.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when waiting for a load shared with other requests took too long.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class LoadTimeoutException extends RuntimeException {
+
+    public LoadTimeoutException(String message) {
+        super(message);
+    }
+
+    public LoadTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
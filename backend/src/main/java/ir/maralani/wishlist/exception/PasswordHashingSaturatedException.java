@@ -0,0 +1,30 @@
+package ir.maralani.wishlist.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a password can't be hashed or checked in time, because every password hashing thread is busy.
+ * Clients are expected to retry after {@link #getRetryAfter()} seconds.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class PasswordHashingSaturatedException extends RuntimeException {
+
+    /**
+     * Seconds after which the client may retry
+     */
+    private final long retryAfter;
+
+    public PasswordHashingSaturatedException(String message, long retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return {@code retryAfter}
+     * @see #retryAfter
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,45 @@
+package ir.maralani.wishlist.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a user is updated against a version other than its current one, i.e. it was changed
+ * by someone else since it was read. Clients are expected to read the user again, at
+ * {@link #getCurrentVersion()} or later, and retry.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class UserVersionConflictException extends RuntimeException {
+
+    /**
+     * Id of the user
+     */
+    private final long userId;
+
+    /**
+     * Version of the user at the time of the conflict, {@code null} if it's unknown
+     */
+    private final Long currentVersion;
+
+    public UserVersionConflictException(String message, long userId, Long currentVersion) {
+        super(message);
+        this.userId = userId;
+        this.currentVersion = currentVersion;
+    }
+
+    /**
+     * @return {@code userId}
+     * @see #userId
+     */
+    public long getUserId() {
+        return userId;
+    }
+
+    /**
+     * @return {@code currentVersion}
+     * @see #currentVersion
+     */
+    public Long getCurrentVersion() {
+        return currentVersion;
+    }
+}
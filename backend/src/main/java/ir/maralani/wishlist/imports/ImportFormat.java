@@ -0,0 +1,59 @@
+package ir.maralani.wishlist.imports;
+
+import org.springframework.http.MediaType;
+
+import java.util.Optional;
+
+/**
+ * Formats of user imports and exports, both line based so rows can be read and written one at a time.
+ */
+public enum ImportFormat {
+
+    /**
+     * Semicolon separated values with a header line, in the shape of {@code db/csv/default_system_user.csv}
+     */
+    CSV(ImportFormat.CSV_VALUE, ".csv"),
+
+    /**
+     * One JSON object per line, keyed by the same column names as {@link #CSV}
+     */
+    NDJSON(ImportFormat.NDJSON_VALUE, ".ndjson");
+
+    public static final String CSV_VALUE = "text/csv";
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+
+    private final MediaType mediaType;
+    private final String extension;
+
+    ImportFormat(String mediaType, String extension) {
+        this.mediaType = MediaType.parseMediaType(mediaType);
+        this.extension = extension;
+    }
+
+    /**
+     * @param contentType content type of an upload
+     * @return matching format, if any
+     */
+    public static Optional<ImportFormat> of(MediaType contentType) {
+        for (ImportFormat format : values())
+            if (format.mediaType.isCompatibleWith(contentType))
+                return Optional.of(format);
+        return Optional.empty();
+    }
+
+    /**
+     * @return {@code mediaType}
+     * @see #mediaType
+     */
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * @return {@code extension}
+     * @see #extension
+     */
+    public String getExtension() {
+        return extension;
+    }
+}
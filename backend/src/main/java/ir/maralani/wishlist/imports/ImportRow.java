@@ -0,0 +1,66 @@
+package ir.maralani.wishlist.imports;
+
+import java.util.Map;
+
+/**
+ * Single row of an import, either its values keyed by column name or the reason it couldn't be parsed.
+ */
+public class ImportRow {
+
+    /**
+     * Line of the row in the uploaded file, starting at 1
+     */
+    private final long line;
+
+    /**
+     * Values keyed by column name, blank values are left out
+     */
+    private final Map<String, String> values;
+
+    /**
+     * Why the row couldn't be parsed, {@code null} if it could
+     */
+    private final String error;
+
+    private ImportRow(long line, Map<String, String> values, String error) {
+        this.line = line;
+        this.values = values;
+        this.error = error;
+    }
+
+    static ImportRow of(long line, Map<String, String> values) {
+        return new ImportRow(line, values, null);
+    }
+
+    static ImportRow malformed(long line, String error) {
+        return new ImportRow(line, null, error);
+    }
+
+    /**
+     * @return {@code line}
+     * @see #line
+     */
+    public long getLine() {
+        return line;
+    }
+
+    /**
+     * @param column column name
+     * @return value of the column, {@code null} if blank or missing
+     */
+    public String get(String column) {
+        return values.get(column);
+    }
+
+    /**
+     * @return {@code error}
+     * @see #error
+     */
+    public String getError() {
+        return error;
+    }
+
+    public boolean isMalformed() {
+        return error != null;
+    }
+}
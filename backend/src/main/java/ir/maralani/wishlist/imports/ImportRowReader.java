@@ -0,0 +1,226 @@
+package ir.maralani.wishlist.imports;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads an import one row at a time, so the size of an import is bound by disk and not by memory.
+ * <p>
+ * Both formats are line based, a row which can't be parsed is reported as malformed and reading
+ * carries on with the next line. Only a quoted CSV value may span lines.
+ */
+public abstract class ImportRowReader implements Closeable {
+
+    private final BufferedReader reader;
+
+    /**
+     * Number of the last line read
+     */
+    private long line;
+
+    private ImportRowReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @param file         uploaded file
+     * @param format       format of the file
+     * @param objectMapper mapper to parse JSON with
+     * @return reader positioned at the first row
+     * @throws IOException if the file can't be opened
+     */
+    public static ImportRowReader open(Path file, ImportFormat format, ObjectMapper objectMapper) throws IOException {
+        final BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        return format == ImportFormat.CSV ? new CsvReader(reader) : new NdjsonReader(reader, objectMapper);
+    }
+
+    /**
+     * @return next row, {@code null} at the end of the file
+     * @throws IOException if the file can't be read
+     */
+    public ImportRow next() throws IOException {
+        final String text = nextLine();
+        return text != null ? parse(line, text) : null;
+    }
+
+    /**
+     * @return next line, blank or not, {@code null} at the end of the file
+     * @throws IOException if the file can't be read
+     */
+    protected String continuationLine() throws IOException {
+        final String text = reader.readLine();
+        if (text != null)
+            line++;
+        return text;
+    }
+
+    /**
+     * @return next non-blank line, {@code null} at the end of the file
+     * @throws IOException if the file can't be read
+     */
+    protected String nextLine() throws IOException {
+        String text;
+        do {
+            text = reader.readLine();
+            if (text == null)
+                return null;
+            line++;
+        } while (text.trim().isEmpty());
+        return text;
+    }
+
+    /**
+     * @param line number of the line the row starts at
+     * @param text the line
+     * @return row, or a malformed row with the reason
+     * @throws IOException if the row continues on lines which can't be read
+     */
+    protected abstract ImportRow parse(long line, String text) throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static void putIfNotBlank(Map<String, String> values, String column, String value) {
+        if (value == null)
+            return;
+        final String trimmed = value.trim();
+        if (!trimmed.isEmpty())
+            values.put(column, trimmed);
+    }
+
+    /**
+     * Semicolon separated values, the first line names the columns. Values may be quoted as of RFC 4180,
+     * enclosed in double quotes with the double quotes within them doubled, as exports are written.
+     */
+    private static class CsvReader extends ImportRowReader {
+
+        private static final char SEPARATOR = ';';
+        private static final char QUOTE = '"';
+
+        private String[] header;
+
+        CsvReader(BufferedReader reader) {
+            super(reader);
+        }
+
+        @Override
+        public ImportRow next() throws IOException {
+            if (header == null) {
+                final String text = nextLine();
+                if (text == null)
+                    return null;
+                header = text.split(String.valueOf(SEPARATOR), -1);
+                for (int i = 0; i < header.length; i++)
+                    header[i] = header[i].trim();
+            }
+            return super.next();
+        }
+
+        @Override
+        protected ImportRow parse(long line, String text) throws IOException {
+            final List<String> cells = cells(text);
+            if (cells == null)
+                return ImportRow.malformed(line, "A quoted value is not closed.");
+            if (cells.size() != header.length)
+                return ImportRow.malformed(line,
+                        "Expected " + header.length + " columns but found " + cells.size() + ".");
+
+            final Map<String, String> values = new HashMap<>(header.length * 2);
+            for (int i = 0; i < header.length; i++)
+                putIfNotBlank(values, header[i], cells.get(i));
+            return ImportRow.of(line, values);
+        }
+
+        /**
+         * Splits a row into its values, reading on while a quoted value spans lines.
+         *
+         * @return values of the row, {@code null} if a quoted value isn't closed by the end of the file
+         */
+        private List<String> cells(String text) throws IOException {
+            final List<String> cells = new ArrayList<>(header.length);
+            final StringBuilder cell = new StringBuilder();
+            boolean quoted = false;
+            int i = 0;
+            while (true) {
+                if (i == text.length()) {
+                    if (!quoted)
+                        break;
+                    text = continuationLine();
+                    if (text == null)
+                        return null;
+                    cell.append('\n');
+                    i = 0;
+                    continue;
+                }
+                final char c = text.charAt(i++);
+                if (quoted) {
+                    if (c != QUOTE)
+                        cell.append(c);
+                    else if (i < text.length() && text.charAt(i) == QUOTE)
+                        cell.append(text.charAt(i++));
+                    else
+                        quoted = false;
+                } else if (c == SEPARATOR) {
+                    cells.add(cell.toString());
+                    cell.setLength(0);
+                } else if (c == QUOTE && cell.length() == 0) {
+                    quoted = true;
+                } else {
+                    cell.append(c);
+                }
+            }
+            cells.add(cell.toString());
+            return cells;
+        }
+    }
+
+    /**
+     * A flat JSON object per line.
+     */
+    private static class NdjsonReader extends ImportRowReader {
+
+        private final ObjectMapper objectMapper;
+
+        NdjsonReader(BufferedReader reader, ObjectMapper objectMapper) {
+            super(reader);
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        protected ImportRow parse(long line, String text) {
+            final JsonNode node;
+            try {
+                node = objectMapper.readTree(text);
+            } catch (JsonProcessingException e) {
+                return ImportRow.malformed(line, "Not a valid JSON object: " + e.getOriginalMessage());
+            }
+            if (!node.isObject())
+                return ImportRow.malformed(line, "Not a valid JSON object.");
+
+            final Map<String, String> values = new HashMap<>();
+            for (Iterator<Map.Entry<String, JsonNode>> fields = node.fields(); fields.hasNext(); ) {
+                final Map.Entry<String, JsonNode> field = fields.next();
+                if (field.getValue().isContainerNode())
+                    return ImportRow.malformed(line, "Column " + field.getKey() + " is not a plain value.");
+                if (!field.getValue().isNull())
+                    putIfNotBlank(values, field.getKey(), field.getValue().asText());
+            }
+            return ImportRow.of(line, values);
+        }
+    }
+}
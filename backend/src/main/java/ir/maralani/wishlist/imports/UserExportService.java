@@ -0,0 +1,201 @@
+package ir.maralani.wishlist.imports;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ir.maralani.wishlist.domain.converter.LocaleAttributeConverter;
+import ir.maralani.wishlist.domain.converter.TimeZoneAttributeConverter;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Exports every user straight from a database cursor to an output stream, with constant memory.
+ * <p>
+ * Rows are read as plain values (never as entities, and never the password) through a stateless session,
+ * so nothing is kept in a persistence context, and from a forward-only cursor with a fixed fetch size,
+ * so the driver holds one fetch worth of rows at a time. Rows are written as they arrive; when the client
+ * reads slowly, writing blocks and so does reading from the cursor.
+ * <p>
+ * Column names are the ones {@link UserImportService} reads, so an export can be imported elsewhere.
+ */
+@Service
+public class UserExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserExportService.class);
+
+    private static final String EXPORT_QUERY = "select u.id, u.username, u.firstName, u.lastName, u.email, u.phone, " +
+            "u.timeZone, u.enabled, u.locked, u.credentialExpired, u.locale, u.expirationDate, r.name, u.description, " +
+            "u.createdBy, u.lastModifiedBy from User u join u.role r order by u.id";
+
+    /**
+     * Column names, in the order of {@link #EXPORT_QUERY}
+     */
+    private static final String[] COLUMNS = {"id", "username", "f_name", "l_name", "email", "phone", "tz_id",
+            "enabled", "locked", "cred_expired", "lang", "expiration_date", "role", "description", "created_by",
+            "last_modified_by"};
+
+    private static final char CSV_SEPARATOR = ';';
+    private static final char CSV_QUOTE = '"';
+    private static final String CSV_QUOTE_STRING = String.valueOf(CSV_QUOTE);
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final SessionFactory sessionFactory;
+    private final ObjectMapper objectMapper;
+    private final LocaleAttributeConverter localeConverter = new LocaleAttributeConverter();
+    private final TimeZoneAttributeConverter timeZoneConverter = new TimeZoneAttributeConverter();
+
+    /**
+     * Rows fetched from the cursor per round trip
+     */
+    private final int fetchSize;
+
+    public UserExportService(EntityManagerFactory entityManagerFactory, ObjectMapper objectMapper,
+                             @Value("${users.export.fetch-size:1000}") int fetchSize) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * @param format format to write
+     * @param output stream to write to, left open
+     * @return number of exported users
+     * @throws IOException if writing fails, e.g. the client went away
+     */
+    public long export(ImportFormat format, OutputStream output) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+        final RowWriter rowWriter = format == ImportFormat.CSV ? new CsvRowWriter(writer) : new NdjsonRowWriter(writer);
+
+        long rows = 0;
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            // PostgreSQL only streams a result set with a cursor inside a transaction
+            final Transaction transaction = session.beginTransaction();
+            try (ScrollableResults results = session.createQuery(EXPORT_QUERY)
+                    .setReadOnly(true)
+                    .setFetchSize(fetchSize)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+                while (results.next()) {
+                    rowWriter.write(results.get());
+                    rows++;
+                }
+            } finally {
+                transaction.rollback();
+            }
+        }
+        rowWriter.finish();
+
+        log.info("Exported {} users.", rows);
+        return rows;
+    }
+
+    private String format(Object value) {
+        if (value instanceof Locale)
+            return localeConverter.convertToDatabaseColumn((Locale) value);
+        if (value instanceof TimeZone)
+            return timeZoneConverter.convertToDatabaseColumn((TimeZone) value);
+        return value != null ? value.toString() : null;
+    }
+
+    private interface RowWriter {
+
+        void write(Object[] row) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    /**
+     * Header line, then semicolon separated values. Values with a separator, a double quote or a line break
+     * are quoted as of RFC 4180, enclosed in double quotes with the double quotes within them doubled.
+     */
+    private class CsvRowWriter implements RowWriter {
+
+        private final Writer writer;
+
+        CsvRowWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            writer.write(String.join(String.valueOf(CSV_SEPARATOR), COLUMNS));
+            writer.write('\n');
+        }
+
+        @Override
+        public void write(Object[] row) throws IOException {
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0)
+                    writer.write(CSV_SEPARATOR);
+                final String value = format(row[i]);
+                if (value != null)
+                    writeValue(value);
+            }
+            writer.write('\n');
+        }
+
+        private void writeValue(String value) throws IOException {
+            if (value.indexOf(CSV_SEPARATOR) < 0 && value.indexOf(CSV_QUOTE) < 0
+                    && value.indexOf('\r') < 0 && value.indexOf('\n') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write(CSV_QUOTE);
+            writer.write(value.replace(CSV_QUOTE_STRING, CSV_QUOTE_STRING + CSV_QUOTE_STRING));
+            writer.write(CSV_QUOTE);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+    }
+
+    /**
+     * A JSON object per line, missing values are left out.
+     */
+    private class NdjsonRowWriter implements RowWriter {
+
+        private final JsonGenerator generator;
+
+        NdjsonRowWriter(Writer writer) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(writer);
+            // Rows are separated by line breaks only, not by the default space
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(Object[] row) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < row.length; i++) {
+                final Object value = row[i];
+                if (value == null)
+                    continue;
+                if (value instanceof Boolean)
+                    generator.writeBooleanField(COLUMNS[i], (Boolean) value);
+                else if (value instanceof Long)
+                    generator.writeNumberField(COLUMNS[i], (Long) value);
+                else
+                    generator.writeStringField(COLUMNS[i], format(value));
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package ir.maralani.wishlist.imports;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress and outcome of a user import, as reported by the status resource.
+ * <p>
+ * Written by the importing thread and read by any number of status requests, hence the atomic counters.
+ * Rejected rows are kept up to {@code maxErrors}, beyond that they are only counted.
+ */
+public class UserImportJob {
+
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final ImportFormat format;
+    private final String submittedBy;
+    private final Instant submittedAt = Instant.now();
+    private final int maxErrors;
+
+    private volatile State state = State.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String failure;
+
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong imported = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * First {@code maxErrors} rejected rows, guarded by itself
+     */
+    private final List<RowError> errors = new ArrayList<>();
+
+    UserImportJob(ImportFormat format, String submittedBy, int maxErrors) {
+        this.format = format;
+        this.submittedBy = submittedBy;
+        this.maxErrors = maxErrors;
+    }
+
+    void started() {
+        startedAt = Instant.now();
+        state = State.RUNNING;
+    }
+
+    void completed() {
+        finishedAt = Instant.now();
+        state = State.COMPLETED;
+    }
+
+    void failed(String failure) {
+        this.failure = failure;
+        finishedAt = Instant.now();
+        state = State.FAILED;
+    }
+
+    void rowRead() {
+        rowsRead.incrementAndGet();
+    }
+
+    void imported(int rows) {
+        imported.addAndGet(rows);
+    }
+
+    void rejected(long line, String username, String message) {
+        rejected.incrementAndGet();
+        synchronized (errors) {
+            if (errors.size() < maxErrors)
+                errors.add(new RowError(line, username, message));
+        }
+    }
+
+    /**
+     * @return whether the job is done, successfully or not
+     */
+    public boolean isFinished() {
+        return state == State.COMPLETED || state == State.FAILED;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public ImportFormat getFormat() {
+        return format;
+    }
+
+    public String getSubmittedBy() {
+        return submittedBy;
+    }
+
+    public Instant getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    public long getImported() {
+        return imported.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return snapshot of the rejected rows kept so far
+     */
+    public List<RowError> getErrors() {
+        synchronized (errors) {
+            return new ArrayList<>(errors);
+        }
+    }
+
+    /**
+     * A rejected row and why it was rejected.
+     */
+    public static class RowError {
+
+        private final long line;
+        private final String username;
+        private final String message;
+
+        RowError(long line, String username, String message) {
+            this.line = line;
+            this.username = username;
+            this.message = message;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
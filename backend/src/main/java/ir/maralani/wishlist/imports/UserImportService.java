@@ -0,0 +1,411 @@
+package ir.maralani.wishlist.imports;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ir.maralani.wishlist.domain.Role;
+import ir.maralani.wishlist.domain.User;
+import ir.maralani.wishlist.domain.converter.LocaleAttributeConverter;
+import ir.maralani.wishlist.repository.RoleRepository;
+import ir.maralani.wishlist.repository.UserRepository;
+import ir.maralani.wishlist.security.BcryptCostCalibrator;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Imports users in bulk, in the background.
+ * <p>
+ * An upload is spooled to a file and read one row at a time. Rows are validated, checked for duplicates
+ * in the file and in the database, their passwords hashed in parallel, and written in chunks of
+ * {@code chunkSize} rows, each chunk in its own transaction as JDBC batches of {@code batchSize}.
+ * A chunk which fails on commit (e.g. a user created concurrently) is retried row by row,
+ * so only the offending rows are rejected.
+ * <p>
+ * Imports run with the security context of the submitter, who is recorded as creator of the users.
+ */
+@Service
+public class UserImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserImportService.class);
+
+    private static final String DEFAULT_ROLE = "ROLE_USER";
+    private static final String DEFAULT_LANGUAGE = "en";
+
+    // Passwords already hashed (e.g. exported from another instance) are imported as they are
+    private static final Pattern BCRYPT_HASH = Pattern.compile("\\A\\$2[aby]?\\$\\d\\d\\$[./0-9A-Za-z]{53}");
+
+    private final UserRepository userRepository;
+    private final RoleRepository roleRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final BCryptPasswordEncoder passwordEncoder;
+    private final LocaleAttributeConverter localeConverter = new LocaleAttributeConverter();
+
+    private final int chunkSize;
+    private final int batchSize;
+    private final int maxErrors;
+    private final Duration retention;
+
+    /**
+     * Runs the imports themselves, one at a time by default
+     */
+    private final ExecutorService jobExecutor;
+
+    /**
+     * Hashes the passwords of a chunk in parallel. Separate from the login executor, so a large import
+     * can't get logins rejected.
+     */
+    private final ExecutorService hashingExecutor;
+
+    /**
+     * Submitted jobs by id, finished ones are dropped after {@code retention}
+     */
+    private final Map<String, UserImportJob> jobs = new ConcurrentHashMap<>();
+
+    public UserImportService(UserRepository userRepository, RoleRepository roleRepository,
+                             EntityManager entityManager, PlatformTransactionManager transactionManager,
+                             Validator validator, ObjectMapper objectMapper, BcryptCostCalibrator calibrator,
+                             @Value("${users.import.chunk-size:500}") int chunkSize,
+                             @Value("${users.import.batch-size:50}") int batchSize,
+                             @Value("${users.import.max-errors:1000}") int maxErrors,
+                             @Value("${users.import.concurrent-jobs:1}") int concurrentJobs,
+                             @Value("${users.import.hashing-threads:0}") int hashingThreads,
+                             @Value("${users.import.retention:1h}") Duration retention) {
+        this.userRepository = userRepository;
+        this.roleRepository = roleRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.passwordEncoder = new BCryptPasswordEncoder(calibrator.getCost());
+        this.chunkSize = chunkSize;
+        this.batchSize = batchSize;
+        this.maxErrors = maxErrors;
+        this.retention = retention;
+
+        this.jobExecutor = new DelegatingSecurityContextExecutorService(
+                Executors.newFixedThreadPool(concurrentJobs, new CustomizableThreadFactory("users-import-")));
+        this.hashingExecutor = Executors.newFixedThreadPool(
+                hashingThreads > 0 ? hashingThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+                new CustomizableThreadFactory("users-import-hashing-"));
+    }
+
+    /**
+     * Queues an import of a spooled upload, the file is deleted once the import is done.
+     *
+     * @param file        spooled upload
+     * @param format      format of the upload
+     * @param submittedBy username of the submitter
+     * @return the queued job
+     */
+    public UserImportJob submit(Path file, ImportFormat format, String submittedBy) {
+        purgeFinishedJobs();
+
+        final UserImportJob job = new UserImportJob(format, submittedBy, maxErrors);
+        jobs.put(job.getId(), job);
+        jobExecutor.execute(() -> run(job, file));
+        return job;
+    }
+
+    public Optional<UserImportJob> getJob(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+        hashingExecutor.shutdownNow();
+    }
+
+    private void purgeFinishedJobs() {
+        final Instant threshold = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(threshold));
+    }
+
+    private void run(UserImportJob job, Path file) {
+        job.started();
+        log.info("Importing users of job {} submitted by {}.", job.getId(), job.getSubmittedBy());
+
+        final ImportContext context = new ImportContext();
+        try (ImportRowReader reader = ImportRowReader.open(file, job.getFormat(), objectMapper)) {
+            final List<ImportRow> chunk = new ArrayList<>(chunkSize);
+            ImportRow row;
+            while ((row = reader.next()) != null) {
+                job.rowRead();
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    importChunk(job, chunk, context);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty())
+                importChunk(job, chunk, context);
+
+            job.completed();
+            log.info("Imported {} users of job {}, rejected {} rows.", job.getImported(), job.getId(), job.getRejected());
+        } catch (Exception e) {
+            log.error("Import job {} failed.", job.getId(), e);
+            job.failed(e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Could not delete spooled import {}.", file, e);
+            }
+        }
+    }
+
+    private void importChunk(UserImportJob job, List<ImportRow> rows, ImportContext context)
+            throws InterruptedException, ExecutionException {
+        final List<Candidate> candidates = new ArrayList<>(rows.size());
+        for (ImportRow row : rows) {
+            final Candidate candidate = toCandidate(job, row, context);
+            if (candidate != null)
+                candidates.add(candidate);
+        }
+
+        rejectExisting(job, candidates, User::getUsername, userRepository::findExistingUsernames, "Username");
+        rejectExisting(job, candidates, User::getEmail, userRepository::findExistingEmails, "Email");
+        rejectExisting(job, candidates, User::getPhone, userRepository::findExistingPhones, "Phone");
+        if (candidates.isEmpty())
+            return;
+
+        hashPasswords(candidates);
+        write(job, candidates, context);
+    }
+
+    /**
+     * @return the row as a valid user, or {@code null} if it was rejected
+     */
+    private Candidate toCandidate(UserImportJob job, ImportRow row, ImportContext context) {
+        if (row.isMalformed()) {
+            job.rejected(row.getLine(), null, row.getError());
+            return null;
+        }
+
+        final String username = row.get("username");
+        final Candidate candidate;
+        try {
+            candidate = new Candidate(row, toUser(row, context));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            job.rejected(row.getLine(), username, e.getMessage());
+            return null;
+        }
+
+        final Set<ConstraintViolation<User>> violations = validator.validate(candidate.user);
+        if (!violations.isEmpty()) {
+            job.rejected(row.getLine(), username, violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+            return null;
+        }
+
+        final User user = candidate.user;
+        if (!context.usernames.add(user.getUsername())) {
+            job.rejected(row.getLine(), username, "Username appears more than once in the import.");
+            return null;
+        }
+        if (user.getEmail() != null && !context.emails.add(user.getEmail())) {
+            job.rejected(row.getLine(), username, "Email appears more than once in the import.");
+            return null;
+        }
+        if (user.getPhone() != null && !context.phones.add(user.getPhone())) {
+            job.rejected(row.getLine(), username, "Phone appears more than once in the import.");
+            return null;
+        }
+        return candidate;
+    }
+
+    private User toUser(ImportRow row, ImportContext context) {
+        final User user = new User();
+        user.setType(User.Type.INTERNAL);
+        user.setUsername(row.get("username"));
+        user.setFirstName(row.get("f_name"));
+        user.setLastName(row.get("l_name"));
+        user.setEmail(row.get("email"));
+        user.setPhone(row.get("phone"));
+        user.setDescription(row.get("description"));
+        user.setEnabled(parseBoolean(row, "enabled", false));
+        user.setLocked(parseBoolean(row, "locked", false));
+        user.setCredentialExpired(parseBoolean(row, "cred_expired", true));
+        user.setLocale(localeConverter.convertToEntityAttribute(
+                Optional.ofNullable(row.get("lang")).orElse(DEFAULT_LANGUAGE)));
+
+        final String zoneId = row.get("tz_id");
+        if (zoneId != null)
+            // TimeZone silently falls back to GMT for unknown ids, ZoneId doesn't
+            user.setTimeZone(TimeZone.getTimeZone(ZoneId.of(zoneId)));
+
+        final String expirationDate = row.get("expiration_date");
+        if (expirationDate != null)
+            user.setExpirationDate(ZonedDateTime.parse(expirationDate));
+
+        final String roleName = Optional.ofNullable(row.get("role")).orElse(DEFAULT_ROLE);
+        final Role role = context.roles.computeIfAbsent(roleName, roleRepository::getByName);
+        if (role == null)
+            throw new IllegalArgumentException("Unknown role " + roleName + ".");
+        user.setRole(role);
+        return user;
+    }
+
+    private static Boolean parseBoolean(ImportRow row, String column, boolean defaultValue) {
+        final String value = row.get(column);
+        if (value == null)
+            return defaultValue;
+        if ("true".equalsIgnoreCase(value))
+            return true;
+        if ("false".equalsIgnoreCase(value))
+            return false;
+        throw new IllegalArgumentException(column + " must be either true or false.");
+    }
+
+    /**
+     * Rejects candidates conflicting with users already in the database, with a single query per chunk.
+     */
+    private void rejectExisting(UserImportJob job, List<Candidate> candidates,
+                                Function<User, String> attribute,
+                                Function<Collection<String>, List<String>> finder,
+                                String name) {
+        final Set<String> values = candidates.stream()
+                .map(candidate -> attribute.apply(candidate.user))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (values.isEmpty())
+            return;
+
+        final Set<String> existing = new HashSet<>(finder.apply(values));
+        if (existing.isEmpty())
+            return;
+
+        candidates.removeIf(candidate -> {
+            if (!existing.contains(attribute.apply(candidate.user)))
+                return false;
+            job.rejected(candidate.row.getLine(), candidate.user.getUsername(), name + " is already taken.");
+            return true;
+        });
+    }
+
+    private void hashPasswords(List<Candidate> candidates) throws InterruptedException, ExecutionException {
+        final List<Callable<String>> tasks = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            final String password = candidate.row.get("password");
+            tasks.add(() -> password == null || BCRYPT_HASH.matcher(password).matches() ?
+                    password : passwordEncoder.encode(password));
+        }
+
+        final List<Future<String>> hashes = hashingExecutor.invokeAll(tasks);
+        for (int i = 0; i < candidates.size(); i++)
+            candidates.get(i).user.setPassword(hashes.get(i).get());
+    }
+
+    private void write(UserImportJob job, List<Candidate> candidates, ImportContext context) {
+        try {
+            persist(candidates);
+            job.imported(candidates.size());
+        } catch (PersistenceException | DataAccessException e) {
+            // The flush fails with a JPA exception, the entity manager isn't a repository and doesn't translate it
+            log.debug("Chunk of import job {} failed, retrying row by row.", job.getId(), e);
+            for (Candidate candidate : candidates) {
+                try {
+                    // The failed attempt left the entity with an id, start over from the row
+                    final User user = toUser(candidate.row, context);
+                    user.setPassword(candidate.user.getPassword());
+                    persist(Collections.singletonList(new Candidate(candidate.row, user)));
+                    job.imported(1);
+                } catch (PersistenceException | DataAccessException rowFailure) {
+                    job.rejected(candidate.row.getLine(), candidate.user.getUsername(), "Could not be written: " +
+                            NestedExceptionUtils.getMostSpecificCause(rowFailure).getMessage());
+                }
+            }
+        }
+    }
+
+    private void persist(List<Candidate> candidates) {
+        transactionTemplate.execute(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+            for (Candidate candidate : candidates) {
+                // Roles were looked up outside of this transaction
+                candidate.user.setRole(entityManager.getReference(Role.class, candidate.user.getRole().getId()));
+                entityManager.persist(candidate.user);
+            }
+            entityManager.flush();
+            // Nothing of a chunk is needed afterwards, keep the persistence context from growing
+            entityManager.clear();
+            return null;
+        });
+    }
+
+    /**
+     * A valid row, along with the user it becomes.
+     */
+    private static class Candidate {
+
+        private final ImportRow row;
+        private final User user;
+
+        Candidate(ImportRow row, User user) {
+            this.row = row;
+            this.user = user;
+        }
+    }
+
+    /**
+     * What an import has seen so far, across chunks.
+     */
+    private static class ImportContext {
+
+        private final Set<String> usernames = new HashSet<>();
+        private final Set<String> emails = new HashSet<>();
+        private final Set<String> phones = new HashSet<>();
+
+        /**
+         * Roles by name, looked up once per import
+         */
+        private final Map<String, Role> roles = new HashMap<>();
+    }
+}
@@ -0,0 +1,32 @@
+package ir.maralani.wishlist.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Encryption or decryption of an attribute by {@link ir.maralani.wishlist.domain.converter.JPACryptoConverter}.
+ */
+@Name("ir.maralani.wishlist.AttributeCrypto")
+@Label("Attribute Encryption")
+@Category({"Wishlist", "Persistence"})
+@Description("Encryption or decryption of an encrypted attribute")
+@StackTrace(false)
+public class AttributeCryptoEvent extends Event {
+
+    public static final String SUCCEEDED = "succeeded";
+    public static final String FAILED = "failed";
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Length")
+    @Description("Length of the converted value, in characters")
+    public int length;
+
+    @Label("Outcome")
+    public String outcome;
+}
@@ -0,0 +1,177 @@
+package ir.maralani.wishlist.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Starts, dumps and stops flight recordings on demand, with the JDK defaults and the settings of the
+ * application events ({@code jfr/wishlist.jfc}).
+ * <p>
+ * A continuous recording can be started along with the application ({@code jfr.recording.on-startup}),
+ * so evidence of a latency spike is at hand when it's noticed: dump it, then look for slow events.
+ */
+@Component
+@Endpoint(id = "jfr")
+public class FlightRecorderEndpoint {
+
+    private static final Logger log = LoggerFactory.getLogger(FlightRecorderEndpoint.class);
+
+    private static final String SETTINGS = "jfr/wishlist.jfc";
+
+    /**
+     * JDK defaults along with the settings of the application events
+     */
+    private final Map<String, String> settings;
+
+    private final Duration maxAge;
+    private final DataSize maxSize;
+
+    public FlightRecorderEndpoint(@Value("${jfr.recording.on-startup:false}") boolean onStartup,
+                                  @Value("${jfr.recording.max-age:1h}") Duration maxAge,
+                                  @Value("${jfr.recording.max-size:100MB}") DataSize maxSize) {
+        this.maxAge = maxAge;
+        this.maxSize = maxSize;
+
+        // Registered up front, so the settings apply before the first event is committed
+        FlightRecorder.register(TokenVerificationEvent.class);
+        FlightRecorder.register(UserLookupEvent.class);
+        FlightRecorder.register(PasswordCheckEvent.class);
+        FlightRecorder.register(AttributeCryptoEvent.class);
+
+        try (Reader reader = new InputStreamReader(
+                new ClassPathResource(SETTINGS).getInputStream(), StandardCharsets.UTF_8)) {
+            this.settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+            this.settings.putAll(Configuration.create(reader).getSettings());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + SETTINGS + ".", e);
+        } catch (ParseException e) {
+            throw new IllegalStateException("Could not parse " + SETTINGS + ".", e);
+        }
+
+        if (onStartup)
+            log.info("Started continuous flight recording {}.", start("continuous", null));
+    }
+
+    @ReadOperation
+    public List<Map<String, Object>> recordings() {
+        return FlightRecorder.getFlightRecorder().getRecordings().stream()
+                .map(FlightRecorderEndpoint::describe)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param name     name of the recording
+     * @param duration how long to record, until stopped if not given
+     * @return the started recording
+     */
+    @WriteOperation
+    public Map<String, Object> start(@Nullable String name, @Nullable Duration duration) {
+        final Recording recording = new Recording(settings);
+        recording.setName(name != null ? name : "wishlist");
+        recording.setToDisk(true);
+        recording.setMaxAge(maxAge);
+        recording.setMaxSize(maxSize.toBytes());
+        if (duration != null)
+            recording.setDuration(duration);
+        recording.start();
+        return describe(recording);
+    }
+
+    /**
+     * @param id id of the recording
+     * @return what was recorded so far, in the JFR file format
+     */
+    @ReadOperation(produces = "application/octet-stream")
+    public WebEndpointResponse<Resource> dump(@Selector long id) throws IOException {
+        final Recording recording = find(id);
+        if (recording == null)
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+
+        final Path file = Files.createTempFile("wishlist-" + id + "-", ".jfr");
+        recording.dump(file);
+        return new WebEndpointResponse<>(new TemporaryFileResource(file));
+    }
+
+    @DeleteOperation
+    public void stop(@Selector long id) {
+        final Recording recording = find(id);
+        if (recording != null)
+            recording.close();
+    }
+
+    private static Recording find(long id) {
+        return FlightRecorder.getFlightRecorder().getRecordings().stream()
+                .filter(recording -> recording.getId() == id)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static Map<String, Object> describe(Recording recording) {
+        final Map<String, Object> description = new LinkedHashMap<>();
+        description.put("id", recording.getId());
+        description.put("name", recording.getName());
+        description.put("state", recording.getState());
+        description.put("startTime", recording.getStartTime());
+        description.put("duration", recording.getDuration());
+        description.put("maxAge", recording.getMaxAge());
+        description.put("size", recording.getSize());
+        return description;
+    }
+
+    /**
+     * Dump of a recording, deleted once it has been sent.
+     */
+    private static class TemporaryFileResource extends FileSystemResource {
+
+        TemporaryFileResource(Path file) {
+            super(file);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new FilterInputStream(super.getInputStream()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        Files.deleteIfExists(getFile().toPath());
+                    }
+                }
+            };
+        }
+    }
+}
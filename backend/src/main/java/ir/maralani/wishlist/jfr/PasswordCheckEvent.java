@@ -0,0 +1,31 @@
+package ir.maralani.wishlist.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Authentication of a login by username and password, the password hash check included.
+ */
+@Name("ir.maralani.wishlist.PasswordCheck")
+@Label("Password Check")
+@Category({"Wishlist", "Security"})
+@Description("Authentication of a login by username and password")
+@StackTrace(false)
+public class PasswordCheckEvent extends Event {
+
+    public static final String AUTHENTICATED = "authenticated";
+    public static final String BAD_CREDENTIALS = "bad-credentials";
+    public static final String DISABLED = "disabled";
+    public static final String SATURATED = "saturated";
+    public static final String FAILED = "failed";
+
+    @Label("Username")
+    public String username;
+
+    @Label("Outcome")
+    public String outcome;
+}
@@ -0,0 +1,31 @@
+package ir.maralani.wishlist.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Verification of the JWT token of a request by {@link ir.maralani.wishlist.jwt.JwtRequestFilter}.
+ */
+@Name("ir.maralani.wishlist.TokenVerification")
+@Label("Token Verification")
+@Category({"Wishlist", "Security"})
+@Description("Verification of the JWT token of a request")
+@StackTrace(false)
+public class TokenVerificationEvent extends Event {
+
+    public static final String VERIFIED = "verified";
+    public static final String EXPIRED = "expired";
+    public static final String INVALID = "invalid";
+    public static final String MISSING = "missing";
+
+    @Label("Outcome")
+    public String outcome;
+
+    @Label("Cache Hit")
+    @Description("Whether the token was verified before and served from the cache")
+    public boolean cacheHit;
+}
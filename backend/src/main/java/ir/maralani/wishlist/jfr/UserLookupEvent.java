@@ -0,0 +1,33 @@
+package ir.maralani.wishlist.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Lookup of the user details of a principal by {@link ir.maralani.wishlist.security.JwtUserDetailsService}.
+ */
+@Name("ir.maralani.wishlist.UserLookup")
+@Label("User Lookup")
+@Category({"Wishlist", "Security"})
+@Description("Lookup of the user details of a principal")
+@StackTrace(false)
+public class UserLookupEvent extends Event {
+
+    public static final String FOUND = "found";
+    public static final String NOT_FOUND = "not-found";
+    public static final String FAILED = "failed";
+
+    @Label("Username")
+    public String username;
+
+    @Label("Outcome")
+    public String outcome;
+
+    @Label("Cache Hit")
+    @Description("Whether the user details were served from the user cache")
+    public boolean cacheHit;
+}
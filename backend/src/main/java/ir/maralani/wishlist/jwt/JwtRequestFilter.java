@@ -2,6 +2,11 @@ package ir.maralani.wishlist.jwt;
 
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.MalformedJwtException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import ir.maralani.wishlist.jfr.TokenVerificationEvent;
+import ir.maralani.wishlist.logging.RateLimitedLogger;
 import ir.maralani.wishlist.security.JwtUserDetailsService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,44 +23,92 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtRequestFilter extends OncePerRequestFilter {
     private Logger log = LoggerFactory.getLogger(JwtRequestFilter.class);
 
+    /**
+     * Every anonymous request lacks a token, the warning is written at most once a minute
+     */
+    private final RateLimitedLogger missingTokenLog = new RateLimitedLogger(log, Duration.ofMinutes(1));
+
     private final JwtUserDetailsService jwtUserDetailsService;
     private final JwtTokenUtil jwtTokenUtil;
+    private final VerifiedTokenCache verifiedTokenCache;
+
+    /**
+     * Time spent authenticating a request, the rest of the chain excluded
+     */
+    private final Timer filterTimer;
 
-    public JwtRequestFilter(JwtUserDetailsService jwtUserDetailsService, JwtTokenUtil jwtTokenUtil) {
+    public JwtRequestFilter(JwtUserDetailsService jwtUserDetailsService, JwtTokenUtil jwtTokenUtil,
+                            VerifiedTokenCache verifiedTokenCache, MeterRegistry meterRegistry) {
         this.jwtUserDetailsService = jwtUserDetailsService;
         this.jwtTokenUtil = jwtTokenUtil;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.filterTimer = Timer.builder("security.jwt.filter")
+                .description("Time spent authenticating a request by its JWT token")
+                .register(meterRegistry);
+        FunctionCounter.builder("logging.events.suppressed", missingTokenLog, RateLimitedLogger::getSuppressedCount)
+                .tag("logger", missingTokenLog.getName())
+                .description("Repetitive warnings which were not written")
+                .register(meterRegistry);
     }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws ServletException, IOException {
+        final long start = System.nanoTime();
+        try {
+            authenticate(request);
+        } finally {
+            filterTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        chain.doFilter(request, response);
+    }
+
+    private void authenticate(HttpServletRequest request) {
         final String requestTokenHeader = request.getHeader("Authorization");
         String username = null;
-        String jwtToken = null;
+        VerifiedToken verifiedToken = null;
+        final TokenVerificationEvent event = new TokenVerificationEvent();
+        event.begin();
         // JWT Token is in the form "Bearer token". Remove Bearer word and get only the Token
         if (requestTokenHeader != null && requestTokenHeader.startsWith("Bearer ")) {
-            jwtToken = requestTokenHeader.substring(7);
+            final String jwtToken = requestTokenHeader.substring(7);
+            // Anything thrown by the verification, caught here or not, means the token is invalid
+            event.outcome = TokenVerificationEvent.INVALID;
+            event.cacheHit = true;
             try {
-                username = jwtTokenUtil.getUsernameFromToken(jwtToken);
+                // Parse and verify only once, a recently seen token is served from the cache
+                verifiedToken = verifiedTokenCache.get(jwtToken, token -> {
+                    event.cacheHit = false;
+                    return jwtTokenUtil.verifyToken(token);
+                });
+                username = verifiedToken.getSubject();
+                event.outcome = TokenVerificationEvent.VERIFIED;
             } catch (IllegalArgumentException | MalformedJwtException e) {
                 log.debug("Unable to get JWT Token", e);
             } catch (ExpiredJwtException e) {
+                event.outcome = TokenVerificationEvent.EXPIRED;
                 log.debug("JWT Token has expired", e);
+            } finally {
+                commit(event);
             }
         } else {
-            logger.warn("JWT Token does not begin with Bearer String");
+            event.outcome = TokenVerificationEvent.MISSING;
+            commit(event);
+            missingTokenLog.warn("JWT Token does not begin with Bearer String");
         }
         // Once we get the token validate it.
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.jwtUserDetailsService.loadUserByUsername(username);
+            UserDetails userDetails = getUserDetails(verifiedToken);
             // if token is valid configure Spring Security to manually set
             // authentication
-            if (jwtTokenUtil.validateToken(jwtToken, userDetails)) {
+            if (userDetails != null && jwtTokenUtil.validateToken(verifiedToken, userDetails)) {
                 UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                 usernamePasswordAuthenticationToken
@@ -66,6 +119,30 @@ public class JwtRequestFilter extends OncePerRequestFilter {
                 SecurityContextHolder.getContext().setAuthentication(usernamePasswordAuthenticationToken);
             }
         }
-        chain.doFilter(request, response);
+    }
+
+    private static void commit(TokenVerificationEvent event) {
+        event.end();
+        if (event.shouldCommit())
+            event.commit();
+    }
+
+    /**
+     * In stateless mode the principal is rebuilt from the token claims without touching the database,
+     * as long as its account status still permits access, {@code null} is returned otherwise.
+     * Tokens issued before switching to stateless mode don't carry a principal and fall back to a lookup.
+     */
+    private UserDetails getUserDetails(VerifiedToken verifiedToken) {
+        if (jwtTokenUtil.isStateless()) {
+            UserDetails userDetails = jwtTokenUtil.getUserDetailsFromToken(verifiedToken);
+            if (userDetails != null) {
+                if (!userDetails.isEnabled() || !userDetails.isAccountNonLocked() || !userDetails.isAccountNonExpired()) {
+                    log.debug("JWT Token belongs to an account which is not allowed to login");
+                    return null;
+                }
+                return userDetails;
+            }
+        }
+        return this.jwtUserDetailsService.loadUserByUsername(verifiedToken.getSubject());
     }
 }
\ No newline at end of file
@@ -4,15 +4,23 @@ package ir.maralani.wishlist.jwt;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.impl.TextCodec;
+import ir.maralani.wishlist.domain.UserDetailsWrapper;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Component
 public class JwtTokenUtil implements Serializable {
@@ -20,9 +28,33 @@ public class JwtTokenUtil implements Serializable {
 
     public static final long JWT_TOKEN_VALIDITY = 5 * 60 * 60;
 
+    //claims carrying the principal in stateless mode
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLES = "roles";
+    public static final String CLAIM_ENABLED = "enabled";
+    public static final String CLAIM_LOCKED = "locked";
+    public static final String CLAIM_EXPIRED = "expired";
+    public static final String CLAIM_CREDENTIALS_EXPIRED = "credExpired";
+
     @Value("${jwt.secret}")
     private String secret;
 
+    //whether tokens carry the whole principal, so requests can be authenticated without a user lookup
+    @Value("${jwt.stateless.enabled:false}")
+    private boolean stateless;
+
+    //validity of stateless tokens in seconds, bounds how long a stale principal can be used
+    @Value("${jwt.stateless.validity:900}")
+    private long statelessTokenValidity;
+
+    //secret is base64 encoded, decode it once instead of on every sign/parse
+    private byte[] signingKey;
+
+    @PostConstruct
+    public void init() {
+        signingKey = TextCodec.BASE64.decode(secret);
+    }
+
     //retrieve username from jwt token
     public String getUsernameFromToken(String token) {
         return getClaimFromToken(token, Claims::getSubject);
@@ -38,21 +70,54 @@ public class JwtTokenUtil implements Serializable {
         return claimsResolver.apply(claims);
     }
 
+    //parse and verify the token once, the result can be used for the rest of the request
+    public VerifiedToken verifyToken(String token) {
+        return new VerifiedToken(getAllClaimsFromToken(token));
+    }
+
     //for retrieveing any information from token we will need the secret key
     private Claims getAllClaimsFromToken(String token) {
-        return Jwts.parser().setSigningKey(secret).parseClaimsJws(token).getBody();
+        return Jwts.parser().setSigningKey(signingKey).parseClaimsJws(token).getBody();
     }
 
-    //check if the token has expired
-    private Boolean isTokenExpired(String token) {
-        final Date expiration = getExpirationDateFromToken(token);
-        return expiration.before(new Date());
+    public boolean isStateless() {
+        return stateless;
     }
 
-    //generate token for user
+    //generate token for user, in stateless mode the principal is embedded in the claims
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
-        return doGenerateToken(claims, userDetails.getUsername());
+        if (!stateless)
+            return doGenerateToken(claims, userDetails.getUsername(), JWT_TOKEN_VALIDITY);
+
+        if (userDetails instanceof UserDetailsWrapper)
+            claims.put(CLAIM_USER_ID, ((UserDetailsWrapper) userDetails).getId());
+        claims.put(CLAIM_ROLES, userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority).collect(Collectors.toList()));
+        claims.put(CLAIM_ENABLED, userDetails.isEnabled());
+        claims.put(CLAIM_LOCKED, !userDetails.isAccountNonLocked());
+        claims.put(CLAIM_EXPIRED, !userDetails.isAccountNonExpired());
+        claims.put(CLAIM_CREDENTIALS_EXPIRED, !userDetails.isCredentialsNonExpired());
+        return doGenerateToken(claims, userDetails.getUsername(), statelessTokenValidity);
+    }
+
+    //rebuild the principal from a stateless token, null if the token doesn't carry one
+    public UserDetailsWrapper getUserDetailsFromToken(VerifiedToken token) {
+        final Object id = token.getClaim(CLAIM_USER_ID);
+        final Object roles = token.getClaim(CLAIM_ROLES);
+        if (!(id instanceof Number) || !(roles instanceof Collection))
+            return null;
+
+        List<GrantedAuthority> authorities = ((Collection<?>) roles).stream()
+                .map(role -> new SimpleGrantedAuthority(role.toString())).collect(Collectors.toList());
+        // Password is never part of the token, an empty one is enough for an already authenticated principal
+        return new UserDetailsWrapper(((Number) id).longValue(), token.getSubject(), "",
+                getFlag(token, CLAIM_ENABLED), !getFlag(token, CLAIM_EXPIRED),
+                !getFlag(token, CLAIM_CREDENTIALS_EXPIRED), !getFlag(token, CLAIM_LOCKED), authorities);
+    }
+
+    private static boolean getFlag(VerifiedToken token, String name) {
+        return Boolean.TRUE.equals(token.getClaim(name));
     }
 
     //while creating the token -
@@ -60,15 +125,19 @@ public class JwtTokenUtil implements Serializable {
     //2. Sign the JWT using the HS512 algorithm and secret key.
     //3. According to JWS Compact Serialization(https://tools.ietf.org/html/draft-ietf-jose-json-web-signature-41#section-3.1)
     //   compaction of the JWT to a URL-safe string
-    private String doGenerateToken(Map<String, Object> claims, String subject) {
+    private String doGenerateToken(Map<String, Object> claims, String subject, long validity) {
         return Jwts.builder().setClaims(claims).setSubject(subject).setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + JWT_TOKEN_VALIDITY * 1000))
-                .signWith(SignatureAlgorithm.HS512, secret).compact();
+                .setExpiration(new Date(System.currentTimeMillis() + validity * 1000))
+                .signWith(SignatureAlgorithm.HS512, signingKey).compact();
     }
 
     //validate token
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = getUsernameFromToken(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        return validateToken(verifyToken(token), userDetails);
+    }
+
+    //validate an already verified token without parsing it again
+    public Boolean validateToken(VerifiedToken token, UserDetails userDetails) {
+        return (token.getSubject().equals(userDetails.getUsername()) && !token.isExpired());
     }
-}
\ No newline at end of file
+}
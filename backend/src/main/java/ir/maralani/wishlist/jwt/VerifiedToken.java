@@ -0,0 +1,102 @@
+package ir.maralani.wishlist.jwt;
+
+import io.jsonwebtoken.Claims;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable claims of a token whose signature has already been verified.
+ * <p>
+ * A token is parsed and verified exactly once through {@link JwtTokenUtil#verifyToken(String)},
+ * everything else during the request works on this object instead of the raw token.
+ */
+public final class VerifiedToken {
+
+    /**
+     * Subject (username) of the token
+     */
+    private final String subject;
+
+    /**
+     * Issue instant in epoch millis, {@code 0} if absent
+     */
+    private final long issuedAt;
+
+    /**
+     * Expiration instant in epoch millis
+     */
+    private final long expiration;
+
+    /**
+     * All claims of the token, including the registered ones
+     */
+    private final Map<String, Object> claims;
+
+    /**
+     * @param claims verified claims
+     */
+    VerifiedToken(Claims claims) {
+        this.subject = claims.getSubject();
+        this.issuedAt = claims.getIssuedAt() != null ? claims.getIssuedAt().getTime() : 0;
+        this.expiration = claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE;
+        this.claims = Collections.unmodifiableMap(new HashMap<>(claims));
+    }
+
+    /**
+     * @return {@code subject}
+     * @see #subject
+     */
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * @return {@code issuedAt}
+     * @see #issuedAt
+     */
+    public Date getIssuedAt() {
+        return new Date(issuedAt);
+    }
+
+    /**
+     * @return {@code expiration}
+     * @see #expiration
+     */
+    public Date getExpiration() {
+        return new Date(expiration);
+    }
+
+    /**
+     * @return {@code expiration} in epoch millis
+     * @see #expiration
+     */
+    public long getExpirationMillis() {
+        return expiration;
+    }
+
+    /**
+     * @return Whether this token has expired
+     */
+    public boolean isExpired() {
+        return expiration <= System.currentTimeMillis();
+    }
+
+    /**
+     * @param name name of the claim
+     * @return value of the claim or {@code null} if absent
+     */
+    public Object getClaim(String name) {
+        return claims.get(name);
+    }
+
+    /**
+     * @return {@code claims}
+     * @see #claims
+     */
+    public Map<String, Object> getClaims() {
+        return claims;
+    }
+}
@@ -0,0 +1,84 @@
+package ir.maralani.wishlist.jwt;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import ir.maralani.wishlist.cache.BoundedCache;
+import ir.maralani.wishlist.cache.BoundedCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.function.Function;
+
+/**
+ * Keeps the outcome of token verification, so a token which is presented over and over
+ * is parsed and HMAC-verified only once during its lifetime.
+ * <p>
+ * Entries are keyed by the SHA-256 digest of the token rather than the token itself and never outlive
+ * the expiration claim of the token. Only successfully verified tokens are ever cached.
+ */
+@Component
+public class VerifiedTokenCache implements MeterBinder {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this platform.", e);
+        }
+    });
+
+    /**
+     * Whether caching is enabled at all
+     */
+    private final boolean enabled;
+
+    /**
+     * Verified tokens keyed by their digest
+     */
+    private final BoundedCache<String, VerifiedToken> cache;
+
+    public VerifiedTokenCache(@Value("${jwt.cache.enabled:true}") boolean enabled,
+                              @Value("${jwt.cache.maximum-size:10000}") int maximumSize) {
+        this.enabled = enabled;
+        this.cache = new BoundedCache<>("jwt.tokens", maximumSize,
+                Duration.ofSeconds(JwtTokenUtil.JWT_TOKEN_VALIDITY), VerifiedToken::getExpirationMillis);
+    }
+
+    /**
+     * Returns the cached verification outcome of the given token or verifies it on a miss.
+     * Verification failures are propagated and never cached.
+     *
+     * @param token    raw compact token
+     * @param verifier parses and verifies the token
+     * @return verified token
+     */
+    public VerifiedToken get(String token, Function<String, VerifiedToken> verifier) {
+        if (!enabled)
+            return verifier.apply(token);
+
+        return cache.get(digest(token), key -> verifier.apply(token));
+    }
+
+    /**
+     * Drops every cached token.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new BoundedCacheMetrics(cache).bindTo(registry);
+    }
+
+    private static String digest(String token) {
+        MessageDigest digest = SHA_256.get();
+        digest.reset();
+        return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+}
@@ -0,0 +1,69 @@
+package ir.maralani.wishlist.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a line per request to the {@value #LOGGER_NAME} logger: method, path, status and duration.
+ * <p>
+ * Lines are written through the asynchronous appender like everything else; the values are passed as
+ * arguments, so with the logger turned off nothing is measured or formatted. Asynchronous requests
+ * (e.g. exports) are written once they complete.
+ */
+public class AccessLogFilter extends OncePerRequestFilter {
+
+    public static final String LOGGER_NAME = "ir.maralani.wishlist.access";
+
+    private static final Logger access = LoggerFactory.getLogger(LOGGER_NAME);
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!access.isInfoEnabled()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted())
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        log(request, response, start);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            else
+                log(request, response, start);
+        }
+    }
+
+    private static void log(HttpServletRequest request, HttpServletResponse response, long start) {
+        access.info("{} {} {} {}ms", request.getMethod(), request.getRequestURI(), response.getStatus(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+}
@@ -0,0 +1,179 @@
+package ir.maralani.wishlist.logging;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.spi.AppenderAttachable;
+import ch.qos.logback.core.spi.AppenderAttachableImpl;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands logging events over to a background writer through a {@link RingBuffer}, so request threads
+ * neither wait for the attached appenders nor contend on their locks.
+ * <p>
+ * Events are offered to the buffer without blocking; when the writer falls behind and the buffer is full,
+ * events are dropped and counted instead ({@link AsyncRingBufferAppenderMetrics}). The writer drains the
+ * buffer and backs off while it's empty, up to {@link #setMaxIdleMillis(int)}, which is therefore also
+ * how long an event may wait to be written. Events left on stop are written before the writer exits.
+ * <p>
+ * Only events of enabled levels reach an appender at all, logback filters them before a message is built.
+ */
+public class AsyncRingBufferAppender extends UnsynchronizedAppenderBase<ILoggingEvent>
+        implements AppenderAttachable<ILoggingEvent> {
+
+    private static final int SPINS = 100;
+    private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final AppenderAttachableImpl<ILoggingEvent> appenders = new AppenderAttachableImpl<>();
+    private final LongAdder dropped = new LongAdder();
+
+    private int capacity = 8192;
+    private int maxIdleMillis = 10;
+    private int maxFlushMillis = 1000;
+
+    private RingBuffer<ILoggingEvent> buffer;
+    private Thread writer;
+
+    @Override
+    public void start() {
+        if (isStarted())
+            return;
+        if (!appenders.iteratorForAppenders().hasNext()) {
+            addError("No appender attached to the async appender [" + name + "].");
+            return;
+        }
+
+        buffer = new RingBuffer<>(capacity);
+        writer = new Thread(this::write, "async-log-" + name);
+        writer.setDaemon(true);
+        super.start();
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted())
+            return;
+
+        super.stop();
+        LockSupport.unpark(writer);
+        try {
+            writer.join(maxFlushMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive())
+            addWarn("Async appender [" + name + "] was stopped with " + buffer.size() + " events left.");
+        appenders.detachAndStopAllAppenders();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        // Thread name, MDC and message are taken now, they are gone or may change by the time the event is written
+        event.prepareForDeferredProcessing();
+        if (!buffer.offer(event))
+            dropped.increment();
+    }
+
+    private void write() {
+        long parkNanos = MIN_PARK_NANOS;
+        final long maxParkNanos = TimeUnit.MILLISECONDS.toNanos(maxIdleMillis);
+        int spins = 0;
+        while (isStarted()) {
+            final ILoggingEvent event = buffer.poll();
+            if (event != null) {
+                appenders.appendLoopOnAppenders(event);
+                parkNanos = MIN_PARK_NANOS;
+                spins = 0;
+            } else if (spins < SPINS) {
+                spins++;
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(this, parkNanos);
+                parkNanos = Math.min(parkNanos * 2, maxParkNanos);
+            }
+        }
+
+        ILoggingEvent event;
+        while ((event = buffer.poll()) != null)
+            appenders.appendLoopOnAppenders(event);
+    }
+
+    /**
+     * @return number of events dropped because the buffer was full
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return number of events waiting to be written
+     */
+    public int getQueueSize() {
+        return buffer != null ? buffer.size() : 0;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @param capacity most events waiting to be written, rounded up to a power of two
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param maxIdleMillis longest the writer sleeps while there is nothing to write
+     */
+    public void setMaxIdleMillis(int maxIdleMillis) {
+        this.maxIdleMillis = maxIdleMillis;
+    }
+
+    /**
+     * @param maxFlushMillis longest to wait on stop for the events left to be written
+     */
+    public void setMaxFlushMillis(int maxFlushMillis) {
+        this.maxFlushMillis = maxFlushMillis;
+    }
+
+    @Override
+    public void addAppender(Appender<ILoggingEvent> appender) {
+        appenders.addAppender(appender);
+    }
+
+    @Override
+    public Iterator<Appender<ILoggingEvent>> iteratorForAppenders() {
+        return appenders.iteratorForAppenders();
+    }
+
+    @Override
+    public Appender<ILoggingEvent> getAppender(String name) {
+        return appenders.getAppender(name);
+    }
+
+    @Override
+    public boolean isAttached(Appender<ILoggingEvent> appender) {
+        return appenders.isAttached(appender);
+    }
+
+    @Override
+    public void detachAndStopAllAppenders() {
+        appenders.detachAndStopAllAppenders();
+    }
+
+    @Override
+    public boolean detachAppender(Appender<ILoggingEvent> appender) {
+        return appenders.detachAppender(appender);
+    }
+
+    @Override
+    public boolean detachAppender(String name) {
+        return appenders.detachAppender(name);
+    }
+}
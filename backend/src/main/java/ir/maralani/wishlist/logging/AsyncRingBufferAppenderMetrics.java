@@ -0,0 +1,56 @@
+package ir.maralani.wishlist.logging;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.Iterator;
+
+/**
+ * Publishes the events dropped and waiting to be written by every {@link AsyncRingBufferAppender}
+ * of the logging configuration, tagged by the name of the appender.
+ */
+public class AsyncRingBufferAppenderMetrics implements MeterBinder {
+
+    private final LoggerContext loggerContext;
+
+    /**
+     * @param loggerContext logging configuration holding the appenders
+     */
+    public AsyncRingBufferAppenderMetrics(LoggerContext loggerContext) {
+        this.loggerContext = loggerContext;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Logger logger : loggerContext.getLoggerList()) {
+            for (Iterator<Appender<ILoggingEvent>> it = logger.iteratorForAppenders(); it.hasNext(); ) {
+                final Appender<ILoggingEvent> appender = it.next();
+                if (appender instanceof AsyncRingBufferAppender)
+                    bindTo(registry, (AsyncRingBufferAppender) appender);
+            }
+        }
+    }
+
+    private static void bindTo(MeterRegistry registry, AsyncRingBufferAppender appender) {
+        FunctionCounter.builder("logging.events.dropped", appender, AsyncRingBufferAppender::getDroppedCount)
+                .tag("appender", appender.getName())
+                .description("Logging events dropped because the writer fell behind")
+                .register(registry);
+
+        Gauge.builder("logging.events.queued", appender, AsyncRingBufferAppender::getQueueSize)
+                .tag("appender", appender.getName())
+                .description("Logging events waiting to be written")
+                .register(registry);
+
+        Gauge.builder("logging.events.capacity", appender, AsyncRingBufferAppender::getCapacity)
+                .tag("appender", appender.getName())
+                .description("Most logging events waiting to be written at once")
+                .register(registry);
+    }
+}
@@ -0,0 +1,71 @@
+package ir.maralani.wishlist.logging;
+
+import org.slf4j.Logger;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes a repetitive warning at most once per interval, and how many times it was suppressed since.
+ * <p>
+ * Meant for warnings triggered by clients (e.g. a request without a token), which would otherwise be
+ * written once per request. Suppressed warnings cost a clock read and an increment; nothing is
+ * formatted unless the warning is written.
+ */
+public class RateLimitedLogger {
+
+    private final Logger logger;
+    private final long intervalNanos;
+
+    /**
+     * Earliest time (as of {@link System#nanoTime()}) of the next warning to be written
+     */
+    private final AtomicLong next;
+
+    private final LongAdder suppressedSinceLast = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+
+    /**
+     * @param logger   logger to write to
+     * @param interval least time between two warnings
+     */
+    public RateLimitedLogger(Logger logger, Duration interval) {
+        this.logger = logger;
+        this.intervalNanos = interval.toNanos();
+        this.next = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * @param message warning, a constant
+     */
+    public void warn(String message) {
+        if (!logger.isWarnEnabled())
+            return;
+
+        final long now = System.nanoTime();
+        final long due = next.get();
+        if (now - due < 0 || !next.compareAndSet(due, now + intervalNanos)) {
+            suppressedSinceLast.increment();
+            suppressed.increment();
+            return;
+        }
+
+        final long count = suppressedSinceLast.sumThenReset();
+        if (count > 0)
+            logger.warn("{} (suppressed {} times)", message, count);
+        else
+            logger.warn(message);
+    }
+
+    /**
+     * @return number of warnings suppressed so far
+     */
+    public long getSuppressedCount() {
+        return suppressed.sum();
+    }
+
+    public String getName() {
+        return logger.getName();
+    }
+}
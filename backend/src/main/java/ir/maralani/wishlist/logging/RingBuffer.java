@@ -0,0 +1,106 @@
+package ir.maralani.wishlist.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free queue of many producers and a single consumer.
+ * <p>
+ * Every slot carries a sequence telling whose turn it is: a producer claims the next position with a
+ * compare-and-set and publishes its element by advancing the sequence of the slot, the consumer takes
+ * an element once it's published and hands the slot back to the producers of the next lap. Offering
+ * to a full buffer fails right away instead of waiting, so producers never block.
+ *
+ * @param <E> element type
+ */
+public class RingBuffer<E> {
+
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    /**
+     * Next position to be claimed by a producer
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Next position to be taken by the consumer
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity capacity of the buffer, rounded up to a power of two of at least two
+     */
+    public RingBuffer(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity of a ring buffer must be positive.");
+
+        final int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++)
+            sequences.set(i, i);
+    }
+
+    /**
+     * May be called by any thread.
+     *
+     * @param element element to add
+     * @return whether the element was added, {@code false} if the buffer is full
+     */
+    public boolean offer(E element) {
+        long position = tail.get();
+        for (; ; ) {
+            final int index = (int) position & mask;
+            final long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    // Publishes the element to the consumer
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // The slot still holds an element of the previous lap
+                return false;
+            } else {
+                // Another producer claimed the position in the meantime
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Must only be called by the consumer.
+     *
+     * @return the oldest element, {@code null} if there is none
+     */
+    public E poll() {
+        final long position = head.get();
+        final int index = (int) position & mask;
+        if (sequences.get(index) != position + 1)
+            return null;
+
+        final E element = elements.get(index);
+        elements.lazySet(index, null);
+        // Hands the slot over to the producers of the next lap
+        sequences.set(index, position + mask + 1);
+        head.lazySet(position + 1);
+        return element;
+    }
+
+    /**
+     * @return number of elements in the buffer, approximate while producers are active
+     */
+    public int size() {
+        return (int) Math.max(0, Math.min(tail.get() - head.get(), capacity()));
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
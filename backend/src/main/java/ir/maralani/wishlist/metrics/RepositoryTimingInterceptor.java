@@ -0,0 +1,58 @@
+package ir.maralani.wishlist.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Times every call of a repository ({@code repository.invocations}), by repository and method,
+ * transaction and connection handling included.
+ * <p>
+ * The registry is only resolved on the first call: it binds meters of beans which depend on repositories,
+ * so it can't be created while a repository is. Timers are registered on the first call of their method,
+ * after which recording a call costs a map lookup and no allocation.
+ */
+public class RepositoryTimingInterceptor implements MethodInterceptor {
+
+    private final Supplier<MeterRegistry> meterRegistry;
+    private final String repository;
+    private final Map<Method, Timer> timers = new ConcurrentHashMap<>();
+
+    /**
+     * @param meterRegistry       registry of the timers, resolved on the first call
+     * @param repositoryInterface interface of the timed repository
+     */
+    public RepositoryTimingInterceptor(Supplier<MeterRegistry> meterRegistry, Class<?> repositoryInterface) {
+        this.meterRegistry = meterRegistry;
+        this.repository = repositoryInterface.getSimpleName();
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Timer timer = timers.get(invocation.getMethod());
+        if (timer == null)
+            timer = timers.computeIfAbsent(invocation.getMethod(), this::timer);
+
+        final long start = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer timer(Method method) {
+        return Timer.builder("repository.invocations")
+                .tag("repository", repository)
+                .tag("method", method.getName())
+                .description("Time spent in repository calls")
+                .register(meterRegistry.get());
+    }
+}
@@ -0,0 +1,15 @@
+package ir.maralani.wishlist.repository;
+
+import ir.maralani.wishlist.domain.Role;
+
+/**
+ * Lookups of roles through the second-level cache.
+ */
+public interface RoleLookupRepository {
+
+    /**
+     * @param name name of the role
+     * @return the role, {@code null} if there is none by that name
+     */
+    Role getByName(String name);
+}
@@ -0,0 +1,26 @@
+package ir.maralani.wishlist.repository;
+
+import ir.maralani.wishlist.domain.Role;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Looks roles up by their natural id, which is answered from the natural id cache
+ * instead of a query once the role was loaded.
+ */
+public class RoleLookupRepositoryImpl implements RoleLookupRepository {
+
+    private final EntityManager entityManager;
+
+    public RoleLookupRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Role getByName(String name) {
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(Role.class).load(name);
+    }
+}
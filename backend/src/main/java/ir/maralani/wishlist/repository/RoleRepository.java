@@ -0,0 +1,7 @@
+package ir.maralani.wishlist.repository;
+
+import ir.maralani.wishlist.domain.Role;
+import org.springframework.data.repository.CrudRepository;
+
+public interface RoleRepository extends CrudRepository<Role, Long>, RoleLookupRepository {
+}
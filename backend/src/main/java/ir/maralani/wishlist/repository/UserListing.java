@@ -0,0 +1,172 @@
+package ir.maralani.wishlist.repository;
+
+import ir.maralani.wishlist.domain.User;
+import ir.maralani.wishlist.domain.UserView;
+import ir.maralani.wishlist.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Filters, order and position of a page of the user listing.
+ * <p>
+ * Pages are addressed by keyset: a cursor holds the sort key of the last user of the previous page,
+ * and the next page starts right after it. Unlike an offset, finding where a page starts costs
+ * a single index lookup no matter how deep into the listing it is.
+ */
+public class UserListing {
+
+    public enum Order {
+
+        /**
+         * By creation date, then id for users created at the same instant
+         */
+        CREATED,
+
+        /**
+         * By username, which is unique
+         */
+        USERNAME
+    }
+
+    private static final String SEPARATOR = "|";
+
+    private Boolean enabled;
+    private Boolean locked;
+    private User.Type type;
+    private String role;
+    private Order order = Order.CREATED;
+    private int limit = 50;
+
+    /**
+     * Sort key of the last user of the previous page, {@code null} for the first page
+     */
+    private ZonedDateTime afterCreatedDate;
+    private Long afterId;
+    private String afterUsername;
+
+    /**
+     * Positions this listing right after the user the cursor was issued for.
+     *
+     * @param cursor cursor as returned by {@link #cursorOf(UserView)}, {@code null} for the first page
+     * @return this listing
+     * @throws InvalidCursorException if the cursor wasn't issued for this order
+     */
+    public UserListing after(String cursor) {
+        if (cursor == null || cursor.isEmpty())
+            return this;
+
+        final String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Malformed cursor.");
+        }
+
+        final String[] parts = decoded.split("\\" + SEPARATOR, -1);
+        try {
+            if (order == Order.CREATED && parts.length == 3 && parts[0].equals("c")) {
+                afterCreatedDate = ZonedDateTime.parse(parts[1]);
+                afterId = Long.valueOf(parts[2]);
+                return this;
+            }
+            if (order == Order.USERNAME && parts.length >= 2 && parts[0].equals("u")) {
+                // Usernames may contain the separator themselves
+                afterUsername = decoded.substring(2);
+                return this;
+            }
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new InvalidCursorException("Malformed cursor.");
+        }
+        throw new InvalidCursorException("Cursor doesn't belong to a listing by " + order.name().toLowerCase() + ".");
+    }
+
+    /**
+     * @param last last user of a page
+     * @return cursor of the page following it
+     */
+    public String cursorOf(UserView last) {
+        final String key = order == Order.CREATED ?
+                "c" + SEPARATOR + last.getCreatedDate() + SEPARATOR + last.getId() :
+                "u" + SEPARATOR + last.getUsername();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public UserListing setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public Boolean getLocked() {
+        return locked;
+    }
+
+    public UserListing setLocked(Boolean locked) {
+        this.locked = locked;
+        return this;
+    }
+
+    public User.Type getType() {
+        return type;
+    }
+
+    public UserListing setType(User.Type type) {
+        this.type = type;
+        return this;
+    }
+
+    /**
+     * @return name of the role
+     */
+    public String getRole() {
+        return role;
+    }
+
+    public UserListing setRole(String role) {
+        this.role = role;
+        return this;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public UserListing setOrder(Order order) {
+        this.order = order;
+        return this;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public UserListing setLimit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    public ZonedDateTime getAfterCreatedDate() {
+        return afterCreatedDate;
+    }
+
+    public Long getAfterId() {
+        return afterId;
+    }
+
+    public String getAfterUsername() {
+        return afterUsername;
+    }
+
+    /**
+     * @return whether this is positioned after some user
+     */
+    public boolean hasCursor() {
+        return afterId != null || afterUsername != null;
+    }
+}
@@ -0,0 +1,32 @@
+package ir.maralani.wishlist.repository;
+
+import ir.maralani.wishlist.domain.UserView;
+
+import java.util.List;
+
+/**
+ * Keyset paginated listing of users, see {@link UserListing}.
+ */
+public interface UserListingRepository {
+
+    /**
+     * @param listing filters, order, position and size of the page
+     * @return users of the page, at most {@code limit} of them
+     */
+    List<UserView> findPage(UserListing listing);
+
+    /**
+     * @param listing filters to apply, order and position are ignored
+     * @return exact number of users matching the filters
+     */
+    long countMatching(UserListing listing);
+
+    /**
+     * Asks the query planner how many users match the filters instead of counting them.
+     * Costs about the same for any table size, but is only as accurate as the table statistics.
+     *
+     * @param listing filters to apply, order and position are ignored
+     * @return estimated number of users matching the filters
+     */
+    long estimateMatching(UserListing listing);
+}
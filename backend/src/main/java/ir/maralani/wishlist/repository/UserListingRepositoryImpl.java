@@ -0,0 +1,126 @@
+package ir.maralani.wishlist.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ir.maralani.wishlist.domain.UserView;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the listing queries from the filters actually given, so each combination of filters gets
+ * a plain query the planner can use the indexes for.
+ */
+public class UserListingRepositoryImpl implements UserListingRepository {
+
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public UserListingRepositoryImpl(EntityManager entityManager, JdbcTemplate jdbcTemplate,
+                                     ObjectMapper objectMapper) {
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public List<UserView> findPage(UserListing listing) {
+        final List<String> conditions = filterConditions(listing);
+        if (listing.hasCursor()) {
+            if (listing.getOrder() == UserListing.Order.CREATED)
+                // The first condition alone is what lets the index scan start right at the cursor
+                conditions.add("u.createdDate >= :afterCreatedDate " +
+                        "and (u.createdDate > :afterCreatedDate or u.id > :afterId)");
+            else
+                conditions.add("u.username > :afterUsername");
+        }
+
+        final String jpql = UserRepository.VIEW_QUERY + where(conditions) +
+                (listing.getOrder() == UserListing.Order.CREATED ?
+                        " order by u.createdDate, u.id" : " order by u.username");
+
+        final TypedQuery<UserView> query = entityManager.createQuery(jpql, UserView.class);
+        bindFilters(query, listing);
+        if (listing.hasCursor()) {
+            if (listing.getOrder() == UserListing.Order.CREATED) {
+                query.setParameter("afterCreatedDate", listing.getAfterCreatedDate());
+                query.setParameter("afterId", listing.getAfterId());
+            } else
+                query.setParameter("afterUsername", listing.getAfterUsername());
+        }
+        return query.setMaxResults(listing.getLimit()).getResultList();
+    }
+
+    @Override
+    public long countMatching(UserListing listing) {
+        final TypedQuery<Long> query = entityManager.createQuery(
+                "select count(u) from User u join u.role r " + where(filterConditions(listing)), Long.class);
+        bindFilters(query, listing);
+        return query.getSingleResult();
+    }
+
+    @Override
+    public long estimateMatching(UserListing listing) {
+        // EXPLAIN takes no bind parameters, so every filter goes in as a literal of a type which can't
+        // carry anything but its value; the role name is replaced by its id for that reason.
+        final List<String> conditions = new ArrayList<>();
+        if (listing.getEnabled() != null)
+            conditions.add("u.enabled = " + listing.getEnabled().booleanValue());
+        if (listing.getLocked() != null)
+            conditions.add("u.locked = " + listing.getLocked().booleanValue());
+        if (listing.getType() != null)
+            conditions.add("u.type = '" + listing.getType().name() + "'");
+        if (listing.getRole() != null) {
+            final List<Long> roleIds = entityManager
+                    .createQuery("select r.id from Role r where r.name = :name", Long.class)
+                    .setParameter("name", listing.getRole())
+                    .getResultList();
+            if (roleIds.isEmpty())
+                return 0;
+            conditions.add("u.role_id = " + roleIds.get(0).longValue());
+        }
+
+        final String plan = jdbcTemplate.queryForObject("explain (format json) select 1 from users u " +
+                where(conditions), String.class);
+        try {
+            final JsonNode root = objectMapper.readTree(plan);
+            return root.path(0).path("Plan").path("Plan Rows").asLong();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the query plan.", e);
+        }
+    }
+
+    private static List<String> filterConditions(UserListing listing) {
+        final List<String> conditions = new ArrayList<>();
+        if (listing.getEnabled() != null)
+            conditions.add("u.enabled = :enabled");
+        if (listing.getLocked() != null)
+            conditions.add("u.locked = :locked");
+        if (listing.getType() != null)
+            conditions.add("u.type = :type");
+        if (listing.getRole() != null)
+            conditions.add("r.name = :role");
+        return conditions;
+    }
+
+    private static void bindFilters(TypedQuery<?> query, UserListing listing) {
+        if (listing.getEnabled() != null)
+            query.setParameter("enabled", listing.getEnabled());
+        if (listing.getLocked() != null)
+            query.setParameter("locked", listing.getLocked());
+        if (listing.getType() != null)
+            query.setParameter("type", listing.getType());
+        if (listing.getRole() != null)
+            query.setParameter("role", listing.getRole());
+    }
+
+    private static String where(List<String> conditions) {
+        return conditions.isEmpty() ? "" : "where " + String.join(" and ", conditions);
+    }
+}
@@ -2,8 +2,69 @@ package ir.maralani.wishlist.repository;
 
 
 import ir.maralani.wishlist.domain.User;
+import ir.maralani.wishlist.domain.UserVersion;
+import ir.maralani.wishlist.domain.UserView;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
-public interface UserRepository extends CrudRepository<User, Long> {
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Methods returning users declare whether they fetch the role along, through {@link User#ROLE_GRAPH};
+ * without the graph the role is left to load lazily, which fails once the user is detached.
+ */
+public interface UserRepository extends CrudRepository<User, Long>, UserListingRepository {
+
+    /**
+     * Selects {@link UserView} projections, to be followed by a where clause
+     */
+    String VIEW_QUERY = "select new ir.maralani.wishlist.domain.UserView(u.id, u.type, u.username, u.firstName, " +
+            "u.lastName, u.email, u.phone, u.enabled, u.locked, u.expirationDate, u.locale, u.timeZone, " +
+            "u.description, r.name, u.createdDate, u.lastModifiedDate, u.version) from User u join u.role r ";
+
+    /**
+     * Users looked up by username are turned into authenticated principals, with their role as authority,
+     * once the lookup has returned and the user is detached.
+     */
+    @EntityGraph(User.ROLE_GRAPH)
     User getByUsername(String username);
+
+    @Override
+    @EntityGraph(User.ROLE_GRAPH)
+    Optional<User> findById(Long id);
+
+    @Query(VIEW_QUERY + "where u.id = :id")
+    Optional<UserView> findViewById(@Param("id") long id);
+
+    @Query("select new ir.maralani.wishlist.domain.UserVersion(u.id, u.version, u.lastModifiedDate) from User u " +
+            "where u.id = :id")
+    Optional<UserVersion> findVersionById(@Param("id") long id);
+
+    @Query(VIEW_QUERY + "where u.id in :ids")
+    List<UserView> findViewsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(VIEW_QUERY + "where u.username in :usernames")
+    List<UserView> findViewsByUsernameIn(@Param("usernames") Collection<String> usernames);
+
+    /**
+     * Bcrypt hashes look like {@code $2a$10$...}, the two digits after the version are the cost.
+     *
+     * @return pairs of cost (as text) and number of users whose password is hashed with it
+     */
+    @Query("select substring(u.password, 5, 2), count(u) from User u where u.password like '$2%' " +
+            "group by substring(u.password, 5, 2)")
+    List<Object[]> countPasswordsByHashCost();
+
+    @Query("select u.username from User u where u.username in :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    @Query("select u.email from User u where u.email in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    @Query("select u.phone from User u where u.phone in :phones")
+    List<String> findExistingPhones(@Param("phones") Collection<String> phones);
 }
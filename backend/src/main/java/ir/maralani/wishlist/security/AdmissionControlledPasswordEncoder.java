@@ -0,0 +1,65 @@
+package ir.maralani.wishlist.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PasswordEncoder} which runs every hash and check of its delegate on a {@link PasswordHashingExecutor},
+ * so the CPU spent on passwords is bounded no matter how many logins arrive at once.
+ * <p>
+ * The hashing itself is timed ({@code security.password.hashing}), time spent waiting for the executor is not.
+ */
+public class AdmissionControlledPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final PasswordHashingExecutor executor;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+
+    public AdmissionControlledPasswordEncoder(PasswordEncoder delegate, PasswordHashingExecutor executor,
+                                              MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.encodeTimer = timer(meterRegistry, "encode");
+        this.matchesTimer = timer(meterRegistry, "matches");
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return executor.call(() -> {
+            final long start = System.nanoTime();
+            try {
+                return delegate.encode(rawPassword);
+            } finally {
+                encodeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return executor.call(() -> {
+            final long start = System.nanoTime();
+            try {
+                return delegate.matches(rawPassword, encodedPassword);
+            } finally {
+                matchesTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("security.password.hashing")
+                .tag("operation", operation)
+                .description("Time spent hashing or checking a password")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+}
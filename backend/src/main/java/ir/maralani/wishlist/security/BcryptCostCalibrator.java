@@ -0,0 +1,127 @@
+package ir.maralani.wishlist.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Picks the bcrypt cost for new password hashes on startup.
+ * <p>
+ * The highest cost whose hash still fits in the configured latency budget on the current hardware is used,
+ * but never less than {@code minCost}. Calibration can be skipped by configuring a fixed cost.
+ */
+@Component
+public class BcryptCostCalibrator {
+
+    private static final Logger log = LoggerFactory.getLogger(BcryptCostCalibrator.class);
+
+    private static final String CALIBRATION_PASSWORD = "Calibrati0n-Passw0rd";
+
+    /**
+     * Cost to hash new passwords with
+     */
+    private final int cost;
+
+    /**
+     * Per-hash latency budget
+     */
+    private final Duration latencyBudget;
+
+    /**
+     * Whether {@link #cost} was calibrated or configured
+     */
+    private final boolean calibrated;
+
+    /**
+     * Measured latency of a single hash per cost, in millis
+     */
+    private final Map<Integer, Long> measurements;
+
+    public BcryptCostCalibrator(@Value("${security.password-hashing.cost:0}") int configuredCost,
+                                @Value("${security.password-hashing.latency-budget:250ms}") Duration latencyBudget,
+                                @Value("${security.password-hashing.min-cost:10}") int minCost,
+                                @Value("${security.password-hashing.max-cost:14}") int maxCost,
+                                MeterRegistry meterRegistry) {
+        this.latencyBudget = latencyBudget;
+
+        if (configuredCost > 0) {
+            this.cost = configuredCost;
+            this.calibrated = false;
+            this.measurements = Collections.emptyMap();
+        } else {
+            Map<Integer, Long> measured = new LinkedHashMap<>();
+            this.cost = calibrate(minCost, maxCost, latencyBudget.toNanos(), measured);
+            this.calibrated = true;
+            this.measurements = Collections.unmodifiableMap(measured);
+            log.info("Calibrated bcrypt cost {} for a latency budget of {}ms, measured {}",
+                    cost, latencyBudget.toMillis(), measurements);
+        }
+
+        Gauge.builder("security.password.hashing.cost", this, BcryptCostCalibrator::getCost)
+                .description("The bcrypt cost new passwords are hashed with")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Every step doubles the work, so it stops at the first cost which exceeds the budget.
+     */
+    private static int calibrate(int minCost, int maxCost, long budgetNanos, Map<Integer, Long> measured) {
+        // Warm up, the first hash is paying for class loading and an interpreted run
+        BCrypt.hashpw(CALIBRATION_PASSWORD, BCrypt.gensalt(4));
+
+        int chosen = minCost;
+        for (int candidate = minCost; candidate <= maxCost; candidate++) {
+            final String salt = BCrypt.gensalt(candidate);
+            final long start = System.nanoTime();
+            BCrypt.hashpw(CALIBRATION_PASSWORD, salt);
+            final long elapsed = System.nanoTime() - start;
+            measured.put(candidate, Duration.ofNanos(elapsed).toMillis());
+
+            if (elapsed > budgetNanos)
+                break;
+            chosen = candidate;
+        }
+        return chosen;
+    }
+
+    /**
+     * @return {@code cost}
+     * @see #cost
+     */
+    public int getCost() {
+        return cost;
+    }
+
+    /**
+     * @return {@code latencyBudget}
+     * @see #latencyBudget
+     */
+    public Duration getLatencyBudget() {
+        return latencyBudget;
+    }
+
+    /**
+     * @return {@code calibrated}
+     * @see #calibrated
+     */
+    public boolean isCalibrated() {
+        return calibrated;
+    }
+
+    /**
+     * @return {@code measurements}
+     * @see #measurements
+     */
+    public Map<Integer, Long> getMeasurements() {
+        return measurements;
+    }
+}
@@ -0,0 +1,78 @@
+package ir.maralani.wishlist.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import ir.maralani.wishlist.cache.BoundedCache;
+import ir.maralani.wishlist.cache.BoundedCacheMetrics;
+import ir.maralani.wishlist.domain.UserDetailsWrapper;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.Duration;
+
+/**
+ * {@link UserCache} bounded in both size and entry lifetime, backed by a {@link BoundedCache}.
+ * <p>
+ * Authentication erases the credentials of the principal it was given, so this cache never hands out
+ * the instance it holds: entries are copied on the way in and on the way out.
+ */
+public class BoundedUserCache implements UserCache, MeterBinder {
+
+    public static final String CACHE_NAME = "users.details";
+
+    /**
+     * Cached user details keyed by username
+     */
+    private final BoundedCache<String, UserDetails> cache;
+
+    /**
+     * @param maximumSize maximum number of cached users
+     * @param timeToLive  how long a user is cached, bounds the staleness of account status changes
+     *                    that don't go through JPA (e.g. an account reaching its expiration date)
+     */
+    public BoundedUserCache(int maximumSize, Duration timeToLive) {
+        this.cache = new BoundedCache<>(CACHE_NAME, maximumSize, timeToLive);
+    }
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        UserDetails user = cache.get(username);
+        return user != null ? copyOf(user) : null;
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        cache.put(user.getUsername(), copyOf(user));
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        cache.invalidate(username);
+    }
+
+    /**
+     * Drops every cached user.
+     */
+    public void removeAllUsersFromCache() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new BoundedCacheMetrics(cache).bindTo(registry);
+    }
+
+    /**
+     * @param user user details
+     * @return copy of the user details, for a caller to erase the credentials of
+     */
+    static UserDetails copyOf(UserDetails user) {
+        if (user instanceof UserDetailsWrapper) {
+            return new UserDetailsWrapper(((UserDetailsWrapper) user).getId(), user.getUsername(), user.getPassword(),
+                    user.isEnabled(), user.isAccountNonExpired(), user.isCredentialsNonExpired(),
+                    user.isAccountNonLocked(), user.getAuthorities());
+        }
+        return User.withUserDetails(user).build();
+    }
+}
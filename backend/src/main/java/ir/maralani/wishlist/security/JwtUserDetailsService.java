@@ -17,27 +17,34 @@
 
 package ir.maralani.wishlist.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import ir.maralani.wishlist.cache.SingleFlight;
 import ir.maralani.wishlist.domain.User;
 import ir.maralani.wishlist.domain.UserDetailsWrapper;
+import ir.maralani.wishlist.jfr.UserLookupEvent;
 import ir.maralani.wishlist.service.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.InternalAuthenticationServiceException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
 import javax.servlet.http.HttpServletRequest;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -57,14 +64,73 @@ public class JwtUserDetailsService implements UserDetailsService {
      */
     private final UserService userService;
 
+    /**
+     * Cache consulted before going to the datasource
+     */
+    private final UserCache userCache;
+
+    /**
+     * Concurrent cache misses of the same user, collapsed into a single load. The user details are shared by
+     * the callers of a load, each of them is given a copy, as authentication erases the credentials.
+     */
+    private final SingleFlight<String, UserDetails> usersByUsername;
+
+    /**
+     * Latency of loading a user on a cache miss
+     */
+    private final Timer loadTimer;
+
     @Autowired
-    public JwtUserDetailsService(UserService userService) {
+    public JwtUserDetailsService(UserService userService, UserCache userCache, MeterRegistry meterRegistry,
+                                 @Value("${users.single-flight.timeout:5s}") Duration timeout) {
         this.userService = userService;
+        this.userCache = userCache;
+        this.usersByUsername = new SingleFlight<>("users.by.username", timeout);
+        this.usersByUsername.bindTo(meterRegistry);
+        this.loadTimer = Timer.builder("users.details.load")
+                .description("Time spent loading user details from the datasource on a cache miss")
+                .register(meterRegistry);
     }
 
+    /**
+     * Deliberately not transactional, so a cache hit doesn't cost a connection checkout.
+     * The lookup itself runs in the read-only transaction of the repository.
+     */
     @Override
-    @Transactional
     public UserDetails loadUserByUsername(final String username) {
+        final UserLookupEvent event = new UserLookupEvent();
+        event.begin();
+        event.username = username;
+        event.outcome = UserLookupEvent.FAILED;
+        try {
+            UserDetails cachedUser = userCache.getUserFromCache(username);
+            if (cachedUser != null) {
+                event.cacheHit = true;
+                event.outcome = UserLookupEvent.FOUND;
+                return cachedUser;
+            }
+
+            final long start = System.nanoTime();
+            try {
+                UserDetails user = BoundedUserCache.copyOf(
+                        usersByUsername.load(username, this::doLoadUserByUsername));
+                userCache.putUserInCache(user);
+                event.outcome = UserLookupEvent.FOUND;
+                return user;
+            } catch (UsernameNotFoundException e) {
+                event.outcome = UserLookupEvent.NOT_FOUND;
+                throw e;
+            } finally {
+                loadTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            event.end();
+            if (event.shouldCommit())
+                event.commit();
+        }
+    }
+
+    private UserDetails doLoadUserByUsername(final String username) {
         log.debug("Authenticating {}...", username);
 
         // Lookup the requested user by username, throw if not found
@@ -79,6 +145,8 @@ public class JwtUserDetailsService implements UserDetailsService {
 
         // Empty collection to load granted authorities into
         final List<GrantedAuthority> grantedAuthorities = new ArrayList<>();
+        if (userDetails.getRole() != null)
+            grantedAuthorities.add(new SimpleGrantedAuthority(userDetails.getRole().getName()));
 
         // Prepare the wrapped user details with the actual Id and return it
         return new UserDetailsWrapper(userDetails.getId(), username, userDetails.getPassword(),
@@ -0,0 +1,47 @@
+package ir.maralani.wishlist.security;
+
+import ir.maralani.wishlist.repository.UserRepository;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reports the bcrypt cost calibration and how the stored password hashes are distributed over costs,
+ * which tells how much CPU a login costs today and how far the upgrade of old hashes has come.
+ */
+@Component
+@Endpoint(id = "passwordhashing")
+public class PasswordHashingEndpoint {
+
+    private final BcryptCostCalibrator calibrator;
+    private final UserRepository userRepository;
+
+    public PasswordHashingEndpoint(BcryptCostCalibrator calibrator, UserRepository userRepository) {
+        this.calibrator = calibrator;
+        this.userRepository = userRepository;
+    }
+
+    @ReadOperation
+    public Map<String, Object> passwordHashing() {
+        Map<String, Object> calibration = new LinkedHashMap<>();
+        calibration.put("cost", calibrator.getCost());
+        calibration.put("calibrated", calibrator.isCalibrated());
+        calibration.put("latencyBudgetMillis", calibrator.getLatencyBudget().toMillis());
+        calibration.put("measuredMillisByCost", calibrator.getMeasurements());
+
+        Map<Integer, Long> costs = new TreeMap<>();
+        List<Object[]> rows = userRepository.countPasswordsByHashCost();
+        for (Object[] row : rows)
+            costs.put(Integer.valueOf((String) row[0]), ((Number) row[1]).longValue());
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("calibration", calibration);
+        report.put("usersByHashCost", costs);
+        return report;
+    }
+}
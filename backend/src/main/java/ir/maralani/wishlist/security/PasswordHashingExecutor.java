@@ -0,0 +1,172 @@
+package ir.maralani.wishlist.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import ir.maralani.wishlist.exception.PasswordHashingSaturatedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dedicated, bounded executor for password hashing.
+ * <p>
+ * Hashing is CPU bound by design, running it on request threads lets a burst of logins pin every core
+ * and starve all other traffic. Here at most {@code threads} hashes run at once, at most {@code queueCapacity}
+ * wait for a thread, and none waits longer than {@code maxWait}. Beyond that callers get a
+ * {@link PasswordHashingSaturatedException} right away instead of queueing up.
+ */
+@Component
+public class PasswordHashingExecutor {
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Longest time a task may wait in the queue before it is dropped
+     */
+    private final long maxWaitNanos;
+
+    /**
+     * Seconds after which clients are advised to retry once saturated
+     */
+    private final long retryAfter;
+
+    private final Timer waitTimer;
+    private final Timer hashTimer;
+    private final Counter rejectedFull;
+    private final Counter rejectedDeadline;
+
+    public PasswordHashingExecutor(@Value("${security.password-hashing.threads:0}") int threads,
+                                   @Value("${security.password-hashing.queue-capacity:100}") int queueCapacity,
+                                   @Value("${security.password-hashing.max-wait:2s}") Duration maxWait,
+                                   @Value("${security.password-hashing.retry-after:5}") long retryAfter,
+                                   MeterRegistry meterRegistry) {
+        // Leave at least half of the cores to the rest of the traffic by default
+        final int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("password-hashing-"));
+        this.maxWaitNanos = maxWait.toNanos();
+        this.retryAfter = retryAfter;
+
+        this.waitTimer = Timer.builder("security.password.hashing.wait")
+                .description("Time password hashing tasks spent waiting for a thread")
+                .register(meterRegistry);
+        this.hashTimer = Timer.builder("security.password.hashing.duration")
+                .description("Time spent hashing or checking a password")
+                .register(meterRegistry);
+        this.rejectedFull = Counter.builder("security.password.hashing.rejected").tag("reason", "queue-full")
+                .description("Password hashing tasks rejected because of saturation")
+                .register(meterRegistry);
+        this.rejectedDeadline = Counter.builder("security.password.hashing.rejected").tag("reason", "deadline")
+                .description("Password hashing tasks rejected because of saturation")
+                .register(meterRegistry);
+        Gauge.builder("security.password.hashing.queue.depth", executor, e -> e.getQueue().size())
+                .description("Password hashing tasks waiting for a thread")
+                .register(meterRegistry);
+        Gauge.builder("security.password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashing tasks being executed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs a hashing task on the executor and waits for its result.
+     *
+     * @param task hashing task
+     * @param <T>  result type
+     * @return result of the task
+     * @throws PasswordHashingSaturatedException if the task was not admitted or didn't start in time
+     */
+    public <T> T call(Callable<T> task) {
+        final long submitted = System.nanoTime();
+        final Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                final long started = System.nanoTime();
+                waitTimer.record(started - submitted, TimeUnit.NANOSECONDS);
+                // The caller gave up on this login already, don't burn CPU for nothing
+                if (started - submitted > maxWaitNanos)
+                    throw new DeadlineExceededException();
+                try {
+                    return task.call();
+                } finally {
+                    hashTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedFull.increment();
+            throw saturated();
+        }
+
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof DeadlineExceededException) {
+                rejectedDeadline.increment();
+                throw saturated();
+            }
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw saturated();
+        }
+    }
+
+    /**
+     * Runs a hashing task in the background, as long as there is room for it.
+     *
+     * @param task hashing task
+     * @return Whether the task was admitted
+     */
+    public boolean tryExecute(Runnable task) {
+        try {
+            executor.execute(() -> {
+                final long started = System.nanoTime();
+                try {
+                    task.run();
+                } finally {
+                    hashTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejectedFull.increment();
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private PasswordHashingSaturatedException saturated() {
+        return new PasswordHashingSaturatedException("Too many concurrent logins, try again later.", retryAfter);
+    }
+
+    /**
+     * Signals a task which waited longer than {@link #maxWaitNanos} for a thread.
+     */
+    private static final class DeadlineExceededException extends RuntimeException {
+        private DeadlineExceededException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ir.maralani.wishlist.security;
+
+import ir.maralani.wishlist.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+/**
+ * Re-hashes passwords stored with a lower cost than the current one, right after the user proved
+ * to know them. Runs in the background on the {@link PasswordHashingExecutor}, so the login doesn't pay
+ * for the extra hash, and is simply skipped while hashing is saturated; the next login will try again.
+ */
+@Service
+public class PasswordUpgradeService {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordUpgradeService.class);
+
+    private final UserService userService;
+    private final PasswordHashingExecutor executor;
+
+    /**
+     * Hashes with the current cost directly, this is already running on the hashing executor
+     */
+    private final BCryptPasswordEncoder encoder;
+
+    public PasswordUpgradeService(UserService userService, PasswordHashingExecutor executor,
+                                  BcryptCostCalibrator calibrator) {
+        this.userService = userService;
+        this.executor = executor;
+        this.encoder = new BCryptPasswordEncoder(calibrator.getCost());
+    }
+
+    /**
+     * @param userDetails authenticated user, along with the stored password hash
+     * @param rawPassword password the user has just authenticated with
+     */
+    public void upgradeIfNeeded(UserDetails userDetails, String rawPassword) {
+        final String username = userDetails.getUsername();
+        final String currentHash = userDetails.getPassword();
+        try {
+            if (currentHash == null || !encoder.upgradeEncoding(currentHash))
+                return;
+        } catch (IllegalArgumentException e) {
+            log.warn("Password of {} is not a bcrypt hash and can't be upgraded.", username);
+            return;
+        }
+
+        boolean admitted = executor.tryExecute(() -> {
+            // Only replace the hash the user authenticated against, never a concurrently changed password
+            if (userService.updatePassword(username, currentHash, encoder.encode(rawPassword)))
+                log.debug("Upgraded password hash of {}.", username);
+        });
+        if (!admitted)
+            log.debug("Password hashing is saturated, postponed upgrading password hash of {}.", username);
+    }
+}
@@ -0,0 +1,47 @@
+package ir.maralani.wishlist.security;
+
+import ir.maralani.wishlist.domain.User;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * JPA entity listener which evicts a {@link User} from the {@link UserCache} whenever it is written,
+ * so locking, disabling or expiring an account takes effect on the next request.
+ * <p>
+ * The user is evicted right away and once more after the surrounding transaction commits,
+ * otherwise a concurrent lookup could cache the old state again before the change is visible.
+ */
+@Component
+public class UserCacheInvalidationListener {
+
+    private final UserCache userCache;
+
+    public UserCacheInvalidationListener(UserCache userCache) {
+        this.userCache = userCache;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void invalidate(User user) {
+        final String username = user.getUsername();
+        if (username == null)
+            return;
+
+        userCache.removeUserFromCache(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    userCache.removeUserFromCache(username);
+                }
+            });
+        }
+    }
+}
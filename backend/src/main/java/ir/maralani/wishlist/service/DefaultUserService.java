@@ -1,22 +1,167 @@
 package ir.maralani.wishlist.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import ir.maralani.wishlist.cache.SingleFlight;
 import ir.maralani.wishlist.domain.User;
+import ir.maralani.wishlist.domain.UserPage;
+import ir.maralani.wishlist.domain.UserUpdate;
+import ir.maralani.wishlist.domain.UserVersion;
+import ir.maralani.wishlist.domain.UserView;
+import ir.maralani.wishlist.exception.UserNotFoundException;
+import ir.maralani.wishlist.exception.UserVersionConflictException;
+import ir.maralani.wishlist.repository.UserListing;
 import ir.maralani.wishlist.repository.UserRepository;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 
+/**
+ * Concurrent lookups of the same user share a single query, so a burst of requests for one popular user
+ * costs the database one round trip instead of one per request.
+ * <p>
+ * Only immutable values are shared that way, such as {@link UserView}. Entities are loaded by every caller,
+ * they belong to the persistence context of the caller and may be changed; lookups of a principal are
+ * collapsed on its {@code UserDetails} instead, see {@link ir.maralani.wishlist.security.JwtUserDetailsService}.
+ */
 @Service
-public class DefaultUserService implements UserService {
+public class DefaultUserService implements UserService, MeterBinder {
     private final UserRepository userRepository;
+    private final EntityManager entityManager;
 
-    public DefaultUserService(UserRepository userRepository) {
+    private final SingleFlight<Long, Optional<UserView>> viewsById;
+    private final SingleFlight<Long, Optional<UserVersion>> versionsById;
+
+    /**
+     * Most values bound to a single IN list, larger batches are looked up in chunks
+     */
+    private final int inListSize;
+
+    public DefaultUserService(UserRepository userRepository, EntityManager entityManager,
+                              @Value("${users.single-flight.timeout:5s}") Duration timeout,
+                              @Value("${users.batch.in-list-size:100}") int inListSize) {
         this.userRepository = userRepository;
+        this.entityManager = entityManager;
+        this.inListSize = inListSize;
+        this.viewsById = new SingleFlight<>("users.view.by.id", timeout);
+        this.versionsById = new SingleFlight<>("users.version.by.id", timeout);
     }
 
     @Override
     public Optional<User> getByUsername(String username) {
         return Optional.ofNullable(userRepository.getByUsername(username));
     }
+
+    @Override
+    public Optional<UserView> getViewById(long id) {
+        return viewsById.load(id, userRepository::findViewById);
+    }
+
+    @Override
+    public Optional<UserVersion> getVersionById(long id) {
+        return versionsById.load(id, userRepository::findVersionById);
+    }
+
+    @Override
+    public Map<Long, UserView> getViewsById(Collection<Long> ids) {
+        return getViews(ids, userRepository::findViewsByIdIn, UserView::getId);
+    }
+
+    @Override
+    public Map<String, UserView> getViewsByUsername(Collection<String> usernames) {
+        return getViews(usernames, userRepository::findViewsByUsernameIn, UserView::getUsername);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public UserPage getPage(UserListing listing, boolean exactCount) {
+        final List<UserView> items = userRepository.findPage(listing);
+        // A full page may be followed by another one, a short one is the last
+        final String next = items.size() == listing.getLimit() ?
+                listing.cursorOf(items.get(items.size() - 1)) : null;
+        final long total = exactCount ?
+                userRepository.countMatching(listing) : userRepository.estimateMatching(listing);
+        return new UserPage(items, next, total, exactCount);
+    }
+
+    /**
+     * Looks up distinct keys with one query per chunk of {@link #inListSize} keys.
+     */
+    private <K> Map<K, UserView> getViews(Collection<K> keys, Function<Collection<K>, List<UserView>> finder,
+                                          Function<UserView, K> keyOf) {
+        final Set<K> unique = new LinkedHashSet<>(keys);
+        unique.remove(null);
+        final List<K> distinct = new ArrayList<>(unique);
+        final Map<K, UserView> views = new HashMap<>(distinct.size() * 2);
+        for (int from = 0; from < distinct.size(); from += inListSize) {
+            final List<K> chunk = distinct.subList(from, Math.min(from + inListSize, distinct.size()));
+            for (UserView view : finder.apply(chunk))
+                views.put(keyOf.apply(view), view);
+        }
+        return views;
+    }
+
+    @Override
+    @Transactional
+    public UserView update(long id, UserUpdate update) {
+        final User user = userRepository.findById(id).orElseThrow(
+                () -> new UserNotFoundException("The user with the id " + id + " couldn't be found in the database."));
+        // Checked again by the update itself, in case of a concurrent change between here and the flush
+        if (!Objects.equals(user.getVersion(), update.getVersion()))
+            throw new UserVersionConflictException("The user with the id " + id + " is at version " +
+                    user.getVersion() + ", not " + update.getVersion() + ".", id, user.getVersion());
+
+        if (update.getEnabled() != null)
+            user.setEnabled(update.getEnabled());
+        if (update.getLocked() != null)
+            user.setLocked(update.getLocked());
+        if (update.getCredentialExpired() != null)
+            user.setCredentialExpired(update.getCredentialExpired());
+        if (update.isNeverExpires())
+            user.setExpirationDate(null);
+        else if (update.getExpirationDate() != null)
+            user.setExpirationDate(update.getExpirationDate());
+        if (update.getDescription() != null)
+            user.setDescription(update.getDescription());
+
+        // Flushed now rather than on commit, so the view carries the version the update was written at
+        try {
+            entityManager.flush();
+        } catch (OptimisticLockException e) {
+            throw new UserVersionConflictException("The user with the id " + id + " was changed concurrently.",
+                    id, null);
+        }
+        return UserView.of(user);
+    }
+
+    @Override
+    @Transactional
+    public boolean updatePassword(String username, String currentPassword, String newPassword) {
+        User user = userRepository.getByUsername(username);
+        if (user == null || !Objects.equals(user.getPassword(), currentPassword))
+            return false;
+
+        user.setPassword(newPassword);
+        return true;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        viewsById.bindTo(registry);
+        versionsById.bindTo(registry);
+    }
 }
@@ -1,9 +1,65 @@
 package ir.maralani.wishlist.service;
 
 import ir.maralani.wishlist.domain.User;
+import ir.maralani.wishlist.domain.UserPage;
+import ir.maralani.wishlist.domain.UserUpdate;
+import ir.maralani.wishlist.domain.UserVersion;
+import ir.maralani.wishlist.domain.UserView;
+import ir.maralani.wishlist.repository.UserListing;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 
 public interface UserService {
     Optional<User> getByUsername(String username);
+
+    Optional<UserView> getViewById(long id);
+
+    /**
+     * @param id id of the user
+     * @return version of the user, for answering conditional requests without loading the user
+     */
+    Optional<UserVersion> getVersionById(long id);
+
+    /**
+     * @param ids ids to look up
+     * @return users found, keyed by id
+     */
+    Map<Long, UserView> getViewsById(Collection<Long> ids);
+
+    /**
+     * @param usernames usernames to look up
+     * @return users found, keyed by username
+     */
+    Map<String, UserView> getViewsByUsername(Collection<String> usernames);
+
+    /**
+     * @param listing    filters, order, position and size of the page
+     * @param exactCount whether to count the matching users or have the database estimate them
+     * @return the page
+     */
+    UserPage getPage(UserListing listing, boolean exactCount);
+
+    /**
+     * Applies an administrative change to a user, as long as the user is still at the version the change
+     * was made against. Only the changed columns are written.
+     *
+     * @param id     id of the user
+     * @param update change to apply, along with the expected version
+     * @return the user as updated, at its new version
+     * @throws ir.maralani.wishlist.exception.UserNotFoundException        if there is no such user
+     * @throws ir.maralani.wishlist.exception.UserVersionConflictException if the user is at another version
+     */
+    UserView update(long id, UserUpdate update);
+
+    /**
+     * Replaces the password hash of a user, as long as it is still the expected one.
+     *
+     * @param username        username of the user
+     * @param currentPassword hash the caller expects to be stored
+     * @param newPassword     new hash
+     * @return whether the hash was replaced
+     */
+    boolean updatePassword(String username, String currentPassword, String newPassword);
 }
@@ -0,0 +1,23 @@
+package ir.maralani.wishlist.web;
+
+import org.springframework.core.io.Resource;
+import org.springframework.web.servlet.resource.PathResourceResolver;
+
+import java.io.IOException;
+
+/**
+ * Resolves the files of the frontend, and {@code index.html} for a route of the frontend, where there is
+ * no such file. The route is then taken up by the router of the frontend, in the browser.
+ */
+public class FrontendResourceResolver extends PathResourceResolver {
+
+    private static final String INDEX = "index.html";
+
+    @Override
+    protected Resource getResource(String resourcePath, Resource location) throws IOException {
+        final Resource resource = super.getResource(resourcePath, location);
+        if (resource != null || !FrontendRoutes.isRoute("/" + resourcePath))
+            return resource;
+        return super.getResource(INDEX, location);
+    }
+}
@@ -0,0 +1,62 @@
+package ir.maralani.wishlist.web;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.util.UrlPathHelper;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tells the routes of the frontend apart from those of the backend.
+ * <p>
+ * The frontend routes in history mode (see README), so a route entered into the browser reaches the backend
+ * as is and is to be answered with {@code index.html}. Everything outside the backend routes is taken for a
+ * frontend route; the patterns are parsed once, matching them doesn't involve regular expressions.
+ */
+public final class FrontendRoutes {
+
+    private static final PathPatternParser PARSER = new PathPatternParser();
+
+    /**
+     * Routes of the backend, and of the hashed assets, which are never answered with {@code index.html}
+     */
+    private static final List<PathPattern> NON_FRONTEND_ROUTES = Arrays.asList(
+            PARSER.parse("/api/**"),
+            PARSER.parse("/actuator/**"),
+            PARSER.parse("/static/**"));
+
+    private static final UrlPathHelper URL_PATH_HELPER = new UrlPathHelper();
+
+    /**
+     * GET and HEAD requests to the frontend: its routes, {@code index.html} and its assets
+     */
+    public static final RequestMatcher FRONTEND_REQUESTS = FrontendRoutes::isFrontendRequest;
+
+    private FrontendRoutes() {
+        throw new IllegalAccessError("Cannot be instantiated.");
+    }
+
+    /**
+     * @param path path within the application, starting with a slash
+     * @return whether the path may be a route of the frontend
+     */
+    public static boolean isRoute(String path) {
+        final PathContainer container = PathContainer.parsePath(path);
+        for (PathPattern pattern : NON_FRONTEND_ROUTES) {
+            if (pattern.matches(container))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isFrontendRequest(HttpServletRequest request) {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod()))
+            return false;
+        final String path = URL_PATH_HELPER.getPathWithinApplication(request);
+        return path.startsWith("/static/") || isRoute(path);
+    }
+}
@@ -0,0 +1,63 @@
+package ir.maralani.wishlist.web;
+
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes resources which are files by handing them to the container, which sends them with {@code sendfile}
+ * where supported: the file goes from the page cache to the socket, without being copied through the JVM.
+ * <p>
+ * Only files on disk qualify, i.e. not resources packed in the application jar, and only those of at least
+ * {@link #minSize} bytes, below which a plain copy is as fast. Everything else is written as usual.
+ * Headers, including the content length, are written by the converter as for any other resource.
+ */
+public class SendfileResourceHttpMessageConverter extends ResourceHttpMessageConverter {
+
+    /**
+     * Request attributes of Tomcat: whether the connector supports sendfile, and the file to send
+     */
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final long minSize;
+
+    /**
+     * @param minSize smallest file sent with sendfile, in bytes
+     */
+    public SendfileResourceHttpMessageConverter(long minSize) {
+        super(true);
+        this.minSize = minSize;
+    }
+
+    @Override
+    protected void writeContent(Resource resource, HttpOutputMessage outputMessage) throws IOException {
+        final HttpServletRequest request = currentRequest();
+        if (request != null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED)) && resource.isFile()) {
+            final File file = resource.getFile();
+            final long length = file.length();
+            if (length >= minSize) {
+                request.setAttribute(SENDFILE_FILENAME, file.getAbsolutePath());
+                request.setAttribute(SENDFILE_START, 0L);
+                request.setAttribute(SENDFILE_END, length);
+                return;
+            }
+        }
+        super.writeContent(resource, outputMessage);
+    }
+
+    private static HttpServletRequest currentRequest() {
+        final RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes ?
+                ((ServletRequestAttributes) attributes).getRequest() : null;
+    }
+}
@@ -0,0 +1,146 @@
+package ir.maralani.wishlist.cache;
+
+import ir.maralani.wishlist.exception.LoadTimeoutException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+
+	private static final int WAITERS = 4;
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	private final CountDownLatch started = new CountDownLatch(1);
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@After
+	public void shutDown() {
+		release.countDown();
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void concurrentLoadsOfAKeyRunOnce() throws Exception {
+		SingleFlight<String, Object> flight = new SingleFlight<>("test", Duration.ofSeconds(10));
+		AtomicInteger calls = new AtomicInteger();
+		Object value = new Object();
+
+		Future<Object> first = executor.submit(() -> flight.load("key", key -> {
+			calls.incrementAndGet();
+			await(started, release);
+			return value;
+		}));
+		List<Future<Object>> waiters = startWaiters(flight);
+
+		release.countDown();
+		assertThat(first.get(10, TimeUnit.SECONDS), sameInstance(value));
+		for (Future<Object> waiter : waiters)
+			assertThat(waiter.get(10, TimeUnit.SECONDS), sameInstance(value));
+		assertThat(calls.get(), is(1));
+		assertThat(flight.loadCount(), is(1L));
+		assertThat(flight.collapsedCount(), is((long) WAITERS));
+	}
+
+	@Test
+	public void failureOfALoadIsThrownToEveryWaiter() throws Exception {
+		SingleFlight<String, Object> flight = new SingleFlight<>("test", Duration.ofSeconds(10));
+		IllegalStateException failure = new IllegalStateException("load failed");
+
+		Future<Object> first = executor.submit(() -> flight.load("key", key -> {
+			await(started, release);
+			throw failure;
+		}));
+		List<Future<Object>> waiters = startWaiters(flight);
+
+		release.countDown();
+		assertThat(causeOf(first), sameInstance(failure));
+		for (Future<Object> waiter : waiters)
+			assertThat(causeOf(waiter), sameInstance(failure));
+		assertThat(flight.failureCount(), is(1L));
+	}
+
+	@Test
+	public void waitersGiveUpAfterTheTimeout() throws Exception {
+		SingleFlight<String, Object> flight = new SingleFlight<>("test", Duration.ofMillis(50));
+
+		executor.submit(() -> flight.load("key", key -> {
+			await(started, release);
+			return new Object();
+		}));
+		started.await(10, TimeUnit.SECONDS);
+
+		try {
+			flight.load("key", key -> {
+				throw new AssertionError("A load is in flight already");
+			});
+			fail("Waiting for the load should have timed out");
+		} catch (LoadTimeoutException e) {
+			assertThat(flight.timeoutCount(), is(1L));
+		}
+	}
+
+	@Test
+	public void completedLoadsAreNotKept() {
+		SingleFlight<String, Integer> flight = new SingleFlight<>("test", Duration.ofSeconds(10));
+		AtomicInteger calls = new AtomicInteger();
+
+		flight.load("key", key -> calls.incrementAndGet());
+		flight.load("key", key -> calls.incrementAndGet());
+
+		assertThat(calls.get(), is(2));
+		assertThat(flight.collapsedCount(), is(0L));
+	}
+
+	/**
+	 * Starts {@link #WAITERS} loads of the key once the first one is in flight, and returns once all of them
+	 * wait for it.
+	 */
+	private List<Future<Object>> startWaiters(SingleFlight<String, Object> flight) throws InterruptedException {
+		started.await(10, TimeUnit.SECONDS);
+		List<Future<Object>> waiters = new ArrayList<>();
+		for (int i = 0; i < WAITERS; i++)
+			waiters.add(executor.submit(() -> flight.load("key", key -> {
+				throw new AssertionError("A load is in flight already");
+			})));
+		while (flight.collapsedCount() < WAITERS)
+			Thread.sleep(1);
+		return waiters;
+	}
+
+	private static void await(CountDownLatch started, CountDownLatch release) {
+		started.countDown();
+		try {
+			release.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static Throwable causeOf(Future<?> future) throws Exception {
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail("The load should have failed");
+			return null;
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+			return e.getCause();
+		}
+	}
+}
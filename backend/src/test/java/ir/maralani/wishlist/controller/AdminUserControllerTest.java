@@ -0,0 +1,351 @@
+package ir.maralani.wishlist.controller;
+
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import io.restassured.path.json.JsonPath;
+import io.restassured.response.ValidatableResponse;
+import io.restassured.specification.RequestSpecification;
+import ir.maralani.wishlist.WishlistApplication;
+import ir.maralani.wishlist.domain.User;
+import ir.maralani.wishlist.domain.UserUpdate;
+import ir.maralani.wishlist.jwt.JwtRequest;
+import ir.maralani.wishlist.repository.RoleRepository;
+import ir.maralani.wishlist.repository.UserRepository;
+import ir.maralani.wishlist.security.BcryptCostCalibrator;
+import org.apache.http.HttpStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.startsWith;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+
+@ActiveProfiles("dev")
+@RunWith(SpringRunner.class)
+@SpringBootTest(
+		classes = WishlistApplication.class,
+		webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT
+)
+public class AdminUserControllerTest {
+
+	private static final String PASSWORD = "admin-password";
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private RoleRepository roleRepository;
+
+	@Autowired
+	private BcryptCostCalibrator bcryptCostCalibrator;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private final List<User> users = new ArrayList<>();
+
+	private String token;
+
+	@Before
+	public void init() {
+		RestAssured.baseURI = "http://localhost";
+		RestAssured.port = port;
+
+		User admin = save(newUser("admin-" + System.nanoTime(), "ROLE_ADMIN"));
+		token = given()
+				.contentType(ContentType.JSON)
+				.body(new JwtRequest(admin.getUsername(), PASSWORD))
+			.when()
+				.post("/api/authenticate")
+			.then()
+				.statusCode(HttpStatus.SC_OK)
+				.extract()
+					.path("token");
+	}
+
+	@After
+	public void cleanUp() {
+		for (User user : users)
+			userRepository.deleteById(user.getId());
+	}
+
+	@Test
+	public void update_should_answer_the_changed_user_with_its_new_version() {
+		User user = save(newUser("update-" + System.nanoTime(), "ROLE_USER"));
+		UserUpdate update = new UserUpdate(user.getVersion());
+		update.setLocked(true);
+
+		given()
+			.header("Authorization", "Bearer " + token)
+			.contentType(ContentType.JSON)
+			.body(update)
+			.pathParam("id", user.getId())
+		.when()
+			.patch("/api/admin/users/{id}")
+		.then()
+			.statusCode(HttpStatus.SC_OK)
+			.header("ETag", notNullValue())
+			.body("locked", is(true))
+			.body("version", is((int) (user.getVersion() + 1)));
+	}
+
+	@Test
+	public void update_against_a_stale_version_should_answer_conflict_with_the_current_version() {
+		User user = save(newUser("stale-" + System.nanoTime(), "ROLE_USER"));
+		long stale = user.getVersion();
+		user.setDescription("changed by someone else");
+		user = userRepository.save(user);
+		long current = user.getVersion();
+
+		UserUpdate update = new UserUpdate(stale);
+		update.setEnabled(false);
+
+		given()
+			.header("Authorization", "Bearer " + token)
+			.contentType(ContentType.JSON)
+			.body(update)
+			.pathParam("id", user.getId())
+		.when()
+			.patch("/api/admin/users/{id}")
+		.then()
+			.statusCode(HttpStatus.SC_CONFLICT)
+			.body("message", notNullValue())
+			.body("currentVersion", is((int) current));
+
+		// Nothing was changed
+		assertThat(userRepository.findById(user.getId()).orElseThrow(AssertionError::new).getVersion(),
+				equalTo(current));
+	}
+
+	@Test
+	public void listing_by_creation_should_page_through_users_created_at_the_same_instant_by_id() {
+		List<Long> tied = new ArrayList<>();
+		for (int i = 0; i < 5; i++)
+			tied.add(save(newUser("tied-" + i + "-" + System.nanoTime(), "ROLE_USER")).getId());
+		// Before everyone else, so pages of two end in the middle of them
+		for (Long id : tied)
+			jdbcTemplate.update("update users set created_date = ? where id = ?",
+					Timestamp.from(Instant.parse("1900-01-01T00:00:00Z")), id);
+
+		List<Long> ids = new ArrayList<>();
+		for (Map<String, Object> item : pageThrough("CREATED"))
+			ids.add(((Number) item.get("id")).longValue());
+
+		assertThat(ids.subList(0, tied.size()), equalTo(tied));
+		assertThat(new HashSet<>(ids).size(), is(ids.size()));
+		assertThat((long) ids.size(), is(userRepository.count()));
+	}
+
+	@Test
+	public void listing_by_username_should_page_through_every_user_once_in_order() {
+		String prefix = "paged-" + System.nanoTime() + "-";
+		for (String suffix : new String[]{"c", "a", "b"})
+			save(newUser(prefix + suffix, "ROLE_USER"));
+
+		List<String> usernames = new ArrayList<>();
+		for (Map<String, Object> item : pageThrough("USERNAME"))
+			usernames.add((String) item.get("username"));
+
+		List<String> ours = new ArrayList<>();
+		for (String username : usernames)
+			if (username.startsWith(prefix))
+				ours.add(username);
+		assertThat(ours, contains(prefix + "a", prefix + "b", prefix + "c"));
+		assertThat(new HashSet<>(usernames).size(), is(usernames.size()));
+		assertThat((long) usernames.size(), is(userRepository.count()));
+	}
+
+	@Test
+	public void cursor_of_another_order_should_be_rejected() {
+		save(newUser("cursor-" + System.nanoTime(), "ROLE_USER"));
+		String cursor = listing("CREATED", null, 1).getString("next");
+
+		listingRequest("USERNAME", cursor, 1)
+			.statusCode(HttpStatus.SC_BAD_REQUEST);
+	}
+
+	@Test
+	public void exact_count_should_count_the_users_and_the_estimate_should_say_it_is_one() {
+		JsonPath exact = listingRequest("CREATED", null, 1, "exactCount", true)
+				.statusCode(HttpStatus.SC_OK)
+				.extract().jsonPath();
+		assertThat(exact.getBoolean("totalExact"), is(true));
+		assertThat(exact.getLong("total"), is(userRepository.count()));
+
+		JsonPath estimate = listingRequest("CREATED", null, 1, "exactCount", false)
+				.statusCode(HttpStatus.SC_OK)
+				.extract().jsonPath();
+		assertThat(estimate.getBoolean("totalExact"), is(false));
+		assertThat(estimate.getLong("total"), greaterThanOrEqualTo(0L));
+
+		// A role nobody can hold is known to match nothing without asking the planner
+		JsonPath none = listingRequest("CREATED", null, 1, "role", "ROLE_NONEXISTENT")
+				.statusCode(HttpStatus.SC_OK)
+				.extract().jsonPath();
+		assertThat(none.getLong("total"), is(0L));
+		assertThat(none.getList("items").size(), is(0));
+	}
+
+	@Test
+	public void import_should_be_accepted_and_followed_through_its_status_resource() throws InterruptedException {
+		String username = "imported-" + System.nanoTime();
+
+		String location = given()
+				.header("Authorization", "Bearer " + token)
+				.contentType("text/csv")
+				.body("username;tz_id;enabled\n" + username + ";UTC;true\n" + username + ";UTC;true\n")
+			.when()
+				.post("/api/admin/users/import")
+			.then()
+				.statusCode(HttpStatus.SC_ACCEPTED)
+				.body("id", notNullValue())
+				.body("submittedBy", startsWith("admin-"))
+				.extract()
+					.header("Location");
+
+		JsonPath job;
+		long deadline = System.nanoTime() + 60_000_000_000L;
+		do {
+			Thread.sleep(50);
+			job = given()
+					.header("Authorization", "Bearer " + token)
+				.when()
+					.get(location)
+				.then()
+					.statusCode(HttpStatus.SC_OK)
+					.extract().jsonPath();
+		} while (!job.getBoolean("finished") && System.nanoTime() < deadline);
+
+		User imported = userRepository.getByUsername(username);
+		if (imported != null)
+			users.add(imported);
+		assertThat(job.getString("state"), is("COMPLETED"));
+		assertThat(job.getInt("imported"), is(1));
+		assertThat(job.getInt("rejected"), is(1));
+		assertThat(job.getString("errors[0].message"), is("Username appears more than once in the import."));
+		assertThat(imported, notNullValue());
+	}
+
+	@Test
+	public void import_of_an_unsupported_format_or_an_unknown_job_should_be_refused() {
+		given()
+			.header("Authorization", "Bearer " + token)
+			.contentType(ContentType.XML)
+			.body("<users/>")
+		.when()
+			.post("/api/admin/users/import")
+		.then()
+			.statusCode(HttpStatus.SC_UNSUPPORTED_MEDIA_TYPE);
+
+		given()
+			.header("Authorization", "Bearer " + token)
+		.when()
+			.get("/api/admin/users/import/unknown")
+		.then()
+			.statusCode(HttpStatus.SC_NOT_FOUND);
+	}
+
+	@Test
+	public void export_should_stream_the_users_as_an_attachment() {
+		User user = save(newUser("export-" + System.nanoTime(), "ROLE_USER"));
+
+		given()
+			.header("Authorization", "Bearer " + token)
+			.queryParam("format", "CSV")
+		.when()
+			.get("/api/admin/users/export")
+		.then()
+			.statusCode(HttpStatus.SC_OK)
+			.contentType(startsWith("text/csv"))
+			.header("Content-Disposition", containsString("users.csv"))
+			.body(startsWith("id;username;"))
+			.body(containsString(";" + user.getUsername() + ";"));
+	}
+
+	/**
+	 * Follows the {@code next} cursors from the first page to the last, two users a page.
+	 *
+	 * @return items of every page, in order
+	 */
+	private List<Map<String, Object>> pageThrough(String order) {
+		List<Map<String, Object>> items = new ArrayList<>();
+		Set<String> cursors = new HashSet<>();
+		String cursor = null;
+		do {
+			JsonPath page = listing(order, cursor, 2);
+			items.addAll(page.getList("items"));
+			cursor = page.getString("next");
+			assertThat("A cursor was issued twice", cursor == null || cursors.add(cursor), is(true));
+		} while (cursor != null);
+		return items;
+	}
+
+	private JsonPath listing(String order, String cursor, int size) {
+		return listingRequest(order, cursor, size)
+				.statusCode(HttpStatus.SC_OK)
+				.extract().jsonPath();
+	}
+
+	private ValidatableResponse listingRequest(String order, String cursor, int size, Object... params) {
+		RequestSpecification request = given()
+				.header("Authorization", "Bearer " + token)
+				.queryParam("order", order)
+				.queryParam("size", size);
+		if (cursor != null)
+			request.queryParam("cursor", cursor);
+		for (int i = 0; i < params.length; i += 2)
+			request.queryParam((String) params[i], params[i + 1]);
+		return request
+			.when()
+				.get("/api/admin/users")
+			.then();
+	}
+
+	private User newUser(String username, String role) {
+		User user = new User();
+		user.setType(User.Type.INTERNAL);
+		user.setUsername(username);
+		// Hashed with the configured cost, so logging in doesn't upgrade the hash
+		user.setPassword(new BCryptPasswordEncoder(bcryptCostCalibrator.getCost()).encode(PASSWORD));
+		user.setEnabled(true);
+		user.setRole(roleRepository.getByName(role));
+		user.setLocale(Locale.ENGLISH);
+		user.setTimeZone(TimeZone.getTimeZone("UTC"));
+		user.setCreatedBy("system");
+		return user;
+	}
+
+	private User save(User user) {
+		User saved = userRepository.save(user);
+		users.add(saved);
+		return saved;
+	}
+}
@@ -2,7 +2,10 @@ package ir.maralani.wishlist.controller;
 
 import ir.maralani.wishlist.WishlistApplication;
 import ir.maralani.wishlist.domain.User;
+import ir.maralani.wishlist.domain.UserBatchRequest;
 import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import io.restassured.path.json.JsonPath;
 import org.apache.http.HttpStatus;
 import org.junit.Before;
 import org.junit.Test;
@@ -12,11 +15,17 @@ import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.util.Arrays;
+import java.util.Collections;
+
 import static io.restassured.RestAssured.given;
 import static io.restassured.RestAssured.when;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 
 @ActiveProfiles("dev")
 @RunWith(SpringRunner.class)
@@ -60,7 +69,7 @@ public class BackendControllerTest {
                 .extract()
                     .body().as(Long.class);
 
-	    User responseUser =
+	    JsonPath responseUser =
             given()
                     .pathParam("id", userId)
                 .when()
@@ -68,13 +77,46 @@ public class BackendControllerTest {
                 .then()
                     .statusCode(HttpStatus.SC_OK)
                     .assertThat()
-                        .extract().as(User.class);
+                        .extract().jsonPath();
 
 	    // Did Norbert came back?
-        assertThat(responseUser.getFirstName(), is("Norbert"));
-        assertThat(responseUser.getLastName(), is("Siegmund"));
+        assertThat(responseUser.getString("firstName"), is("Norbert"));
+        assertThat(responseUser.getString("lastName"), is("Siegmund"));
+        // Only the projection is exposed, never the password hash
+        assertThat(responseUser.get("password"), is(nullValue()));
     }
 
+	@Test
+	public void user_api_should_answer_not_modified_while_the_user_is_unchanged() {
+		String eTag =
+			given()
+				.pathParam("id", 1L)
+			.when()
+				.get("/api/user/{id}")
+			.then()
+				.statusCode(HttpStatus.SC_OK)
+				.header("Cache-Control", containsString("no-cache"))
+				.extract()
+					.header("ETag");
+
+		given()
+			.pathParam("id", 1L)
+			.header("If-None-Match", eTag)
+		.when()
+			.get("/api/user/{id}")
+		.then()
+			.statusCode(HttpStatus.SC_NOT_MODIFIED)
+			.header("ETag", is(eTag));
+
+		given()
+			.pathParam("id", 1L)
+			.header("If-None-Match", "\"1-stale\"")
+		.when()
+			.get("/api/user/{id}")
+		.then()
+			.statusCode(HttpStatus.SC_OK);
+	}
+
 	@Test
 	public void user_api_should_give_http_404_not_found_when_user_not_present_in_db() {
 		Long someId = 200L;
@@ -86,6 +128,22 @@ public class BackendControllerTest {
 			.statusCode(HttpStatus.SC_NOT_FOUND);
 	}
 
+	@Test
+	public void user_batch_api_should_answer_in_request_order_with_not_found_markers() {
+		given()
+			.contentType(ContentType.JSON)
+			.body(new UserBatchRequest(Arrays.asList(200L, 1L), Collections.singletonList("root")))
+		.when()
+			.post("/api/user/batch")
+		.then()
+			.statusCode(HttpStatus.SC_OK)
+			.assertThat()
+				.body("key", contains(200, 1, "root"))
+				.body("found", contains(false, true, true))
+				.body("[1].user.username", is("root"))
+				.body("[2].user.id", is(1));
+	}
+
 	@Test
 	public void secured_api_should_react_with_unauthorized_per_default() {
 
@@ -0,0 +1,165 @@
+package ir.maralani.wishlist.controller;
+
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import ir.maralani.wishlist.WishlistApplication;
+import ir.maralani.wishlist.domain.Role;
+import ir.maralani.wishlist.domain.User;
+import ir.maralani.wishlist.jwt.JwtRequest;
+import ir.maralani.wishlist.repository.RoleRepository;
+import ir.maralani.wishlist.repository.UserRepository;
+import ir.maralani.wishlist.security.BcryptCostCalibrator;
+import ir.maralani.wishlist.sql.QueryCounter;
+import org.apache.http.HttpStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static io.restassured.RestAssured.given;
+
+/**
+ * Query budgets of the endpoints. A change which makes an endpoint issue more SQL than its budget,
+ * e.g. by loading an association per row, fails here; raise a budget only along with the reason.
+ */
+@ActiveProfiles({"dev", "test"})
+@RunWith(SpringRunner.class)
+@SpringBootTest(
+		classes = WishlistApplication.class,
+		webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT
+)
+public class QueryBudgetTest {
+
+	private static final String PASSWORD = "budget-password";
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private RoleRepository roleRepository;
+
+	@Autowired
+	private BcryptCostCalibrator bcryptCostCalibrator;
+
+	private User user;
+
+	@Before
+	public void init() {
+		RestAssured.baseURI = "http://localhost";
+		RestAssured.port = port;
+
+		user = new User();
+		user.setType(User.Type.INTERNAL);
+		user.setUsername("budget-" + System.nanoTime());
+		// Hashed with the configured cost, so logging in doesn't upgrade the hash
+		user.setPassword(new BCryptPasswordEncoder(bcryptCostCalibrator.getCost()).encode(PASSWORD));
+		user.setEnabled(true);
+		user.setRole(roleRepository.getByName("ROLE_USER"));
+		user.setLocale(Locale.ENGLISH);
+		user.setTimeZone(TimeZone.getTimeZone("UTC"));
+		user.setCreatedBy("system");
+		user = userRepository.save(user);
+	}
+
+	@After
+	public void cleanUp() {
+		userRepository.deleteById(user.getId());
+	}
+
+	@Test
+	public void user_api_should_read_a_user_in_one_query() {
+		QueryCounter.during(() ->
+				given()
+					.pathParam("id", user.getId())
+				.when()
+					.get("/api/user/{id}")
+				.then()
+					.statusCode(HttpStatus.SC_OK))
+			.assertRoundTripsAtMost(1)
+			.assertRowsAtMost(1);
+	}
+
+	@Test
+	public void user_api_should_revalidate_a_user_with_its_version_only() {
+		String eTag =
+			given()
+				.pathParam("id", user.getId())
+			.when()
+				.get("/api/user/{id}")
+			.then()
+				.statusCode(HttpStatus.SC_OK)
+				.extract()
+					.header("ETag");
+
+		QueryCounter.during(() ->
+				given()
+					.pathParam("id", user.getId())
+					.header("If-None-Match", eTag)
+				.when()
+					.get("/api/user/{id}")
+				.then()
+					.statusCode(HttpStatus.SC_NOT_MODIFIED))
+			// The id and modification date of the user, not the user itself
+			.assertRoundTripsAtMost(1)
+			.assertRowsAtMost(1)
+			.assertAtMost("join", 0);
+	}
+
+	@Test
+	public void authentication_should_load_the_user_in_one_query() {
+		QueryCounter.during(() -> authenticate())
+			// The user and its role, in one query; the second lookup is served from the user cache
+			.assertRoundTripsAtMost(1)
+			.assertRowsAtMost(1);
+	}
+
+	@Test
+	public void secured_api_should_not_query_with_a_valid_token() {
+		String token = authenticate();
+
+		QueryCounter.during(() ->
+				given()
+					.header("Authorization", "Bearer " + token)
+				.when()
+					.get("/api/secured")
+				.then()
+					.statusCode(HttpStatus.SC_OK))
+			// The principal was cached by the login
+			.assertRoundTripsAtMost(0);
+	}
+
+	@Test
+	public void secured_api_should_not_query_without_a_token() {
+		QueryCounter.during(() ->
+				given()
+				.when()
+					.get("/api/secured")
+				.then()
+					.statusCode(HttpStatus.SC_UNAUTHORIZED))
+			.assertRoundTripsAtMost(0);
+	}
+
+	private String authenticate() {
+		return given()
+				.contentType(ContentType.JSON)
+				.body(new JwtRequest(user.getUsername(), PASSWORD))
+			.when()
+				.post("/api/authenticate")
+			.then()
+				.statusCode(HttpStatus.SC_OK)
+				.extract()
+					.path("token");
+	}
+}
@@ -0,0 +1,149 @@
+package ir.maralani.wishlist.datasource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.anyOf;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReplicaRoutingDataSourceTest {
+
+	private static final String LAG_QUERY = "select lag";
+
+	private DataSource primary;
+	private DataSource first;
+	private DataSource second;
+	private Connection primaryConnection;
+	private Connection firstConnection;
+	private Connection secondConnection;
+	private ReplicaRoutingDataSource dataSource;
+
+	@Before
+	public void setUp() throws SQLException {
+		primary = mock(DataSource.class);
+		first = mock(DataSource.class);
+		second = mock(DataSource.class);
+		primaryConnection = mock(Connection.class);
+		firstConnection = mock(Connection.class);
+		secondConnection = mock(Connection.class);
+		when(primary.getConnection()).thenReturn(primaryConnection);
+		doReturn(firstConnection).when(first).getConnection();
+		when(second.getConnection()).thenReturn(secondConnection);
+
+		Map<String, DataSource> replicas = new LinkedHashMap<>();
+		replicas.put("first", first);
+		replicas.put("second", second);
+		// Health checks are run by the tests themselves
+		dataSource = new ReplicaRoutingDataSource(primary, replicas, ReplicaRoutingDataSource.Selection.ROUND_ROBIN,
+				Duration.ofSeconds(5), Duration.ZERO, LAG_QUERY);
+	}
+
+	@After
+	public void tearDown() {
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+	}
+
+	@Test
+	public void writes_should_go_to_the_primary() throws SQLException {
+		assertThat(dataSource.route(), sameInstance(primaryConnection));
+		assertThat(dataSource.route(), sameInstance(primaryConnection));
+	}
+
+	@Test
+	public void reads_should_be_spread_over_the_replicas() throws SQLException {
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+		Connection connection = dataSource.route();
+		assertThat(dataSource.route(), sameInstance(connection == firstConnection ? secondConnection : firstConnection));
+		assertThat(dataSource.route(), sameInstance(connection));
+	}
+
+	@Test
+	public void connections_asked_for_with_credentials_should_be_routed_with_those_of_the_pools() throws SQLException {
+		assertThat(targetOf(dataSource.getConnection("someone", "secret")), sameInstance(primaryConnection));
+
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		assertThat(targetOf(dataSource.getConnection("someone", "secret")),
+				anyOf(sameInstance(firstConnection), sameInstance(secondConnection)));
+		verify(primary, never()).getConnection(anyString(), anyString());
+		verify(first, never()).getConnection(anyString(), anyString());
+		verify(second, never()).getConnection(anyString(), anyString());
+	}
+
+	@Test
+	public void failing_replica_should_be_left_out_until_it_answers_again() throws SQLException {
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		when(first.getConnection()).thenThrow(new SQLException("Connection refused."));
+
+		for (int i = 0; i < 4; i++) {
+			// The first attempt on the failing replica ends up on the primary
+			assertThat(dataSource.route(), anyOf(sameInstance(primaryConnection), sameInstance(secondConnection)));
+		}
+		assertThat(dataSource.route(), sameInstance(secondConnection));
+		assertThat(dataSource.route(), sameInstance(secondConnection));
+
+		doReturn(firstConnection).when(first).getConnection();
+		answerLag(firstConnection, 0);
+		answerLag(secondConnection, 0);
+		dataSource.checkReplicas();
+
+		Connection connection = dataSource.route();
+		assertThat(dataSource.route(), sameInstance(connection == firstConnection ? secondConnection : firstConnection));
+	}
+
+	@Test
+	public void lagging_replica_should_be_left_out() throws SQLException {
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		answerLag(firstConnection, 30);
+		answerLag(secondConnection, 1);
+		dataSource.checkReplicas();
+
+		assertThat(dataSource.route(), sameInstance(secondConnection));
+		assertThat(dataSource.route(), sameInstance(secondConnection));
+	}
+
+	@Test
+	public void reads_should_fall_back_to_the_primary_without_healthy_replicas() throws SQLException {
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		answerLag(firstConnection, 30);
+		when(second.getConnection()).thenThrow(new SQLException("Connection refused."));
+		dataSource.checkReplicas();
+
+		assertThat(dataSource.route(), sameInstance(primaryConnection));
+	}
+
+	/**
+	 * @return physical connection behind a lazy one, taken on the spot
+	 */
+	private static Connection targetOf(Connection connection) {
+		return ((ConnectionProxy) connection).getTargetConnection();
+	}
+
+	private static void answerLag(Connection connection, double lagSeconds) throws SQLException {
+		Statement statement = mock(Statement.class);
+		ResultSet resultSet = mock(ResultSet.class);
+		when(connection.createStatement()).thenReturn(statement);
+		when(statement.executeQuery(anyString())).thenReturn(resultSet);
+		when(resultSet.next()).thenReturn(true);
+		when(resultSet.getDouble(1)).thenReturn(lagSeconds);
+	}
+}
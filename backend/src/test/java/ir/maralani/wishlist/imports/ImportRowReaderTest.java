@@ -0,0 +1,130 @@
+package ir.maralani.wishlist.imports;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ImportRowReaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void csvRowsAreKeyedByTheHeaderWithBlankValuesLeftOut() throws IOException {
+		List<ImportRow> rows = read(ImportFormat.CSV,
+				"username; email ;enabled\n" +
+				"alice; alice@example.com ;true\n" +
+				"\n" +
+				"bob;;  \n");
+
+		assertThat(rows, hasSize(2));
+		assertThat(rows.get(0).getLine(), is(2L));
+		assertThat(rows.get(0).get("username"), is("alice"));
+		assertThat(rows.get(0).get("email"), is("alice@example.com"));
+		assertThat(rows.get(0).get("enabled"), is("true"));
+		// Blank lines are skipped, but counted
+		assertThat(rows.get(1).getLine(), is(4L));
+		assertThat(rows.get(1).get("username"), is("bob"));
+		assertThat(rows.get(1).get("email"), nullValue());
+		assertThat(rows.get(1).get("enabled"), nullValue());
+	}
+
+	@Test
+	public void csvRowsWithAnotherNumberOfColumnsAreMalformed() throws IOException {
+		List<ImportRow> rows = read(ImportFormat.CSV,
+				"username;email\n" +
+				"alice;alice@example.com;true\n" +
+				"bob;bob@example.com\n");
+
+		assertThat(rows.get(0).isMalformed(), is(true));
+		assertThat(rows.get(0).getError(), containsString("Expected 2 columns but found 3"));
+		assertThat(rows.get(1).isMalformed(), is(false));
+		assertThat(rows.get(1).get("username"), is("bob"));
+	}
+
+	@Test
+	public void quotedCsvValuesKeepSeparatorsQuotesAndLineBreaks() throws IOException {
+		List<ImportRow> rows = read(ImportFormat.CSV,
+				"username;description;email\n" +
+				"alice;\"first;second\n" +
+				"\n" +
+				"said \"\"third\"\"\";alice@example.com\n" +
+				"\"bob\";;\n" +
+				"carol;\"never closed;\n");
+
+		assertThat(rows, hasSize(3));
+		assertThat(rows.get(0).getLine(), is(2L));
+		assertThat(rows.get(0).get("description"), is("first;second\n\nsaid \"third\""));
+		assertThat(rows.get(0).get("email"), is("alice@example.com"));
+		// Lines within a value are counted
+		assertThat(rows.get(1).getLine(), is(5L));
+		assertThat(rows.get(1).get("username"), is("bob"));
+		assertThat(rows.get(2).getError(), containsString("not closed"));
+	}
+
+	@Test
+	public void ndjsonRowsAreKeyedByFieldWithNullsLeftOut() throws IOException {
+		List<ImportRow> rows = read(ImportFormat.NDJSON,
+				"{\"username\": \"alice\", \"enabled\": true, \"phone\": null}\n" +
+				"\n" +
+				"{\"username\": \"bob\", \"email\": \" \"}\n");
+
+		assertThat(rows, hasSize(2));
+		assertThat(rows.get(0).getLine(), is(1L));
+		assertThat(rows.get(0).get("username"), is("alice"));
+		assertThat(rows.get(0).get("enabled"), is("true"));
+		assertThat(rows.get(0).get("phone"), nullValue());
+		assertThat(rows.get(1).getLine(), is(3L));
+		assertThat(rows.get(1).get("email"), nullValue());
+	}
+
+	@Test
+	public void ndjsonRowsWhichAreNotFlatObjectsAreMalformedAndReadingCarriesOn() throws IOException {
+		List<ImportRow> rows = read(ImportFormat.NDJSON,
+				"{\"username\": \n" +
+				"[\"alice\"]\n" +
+				"{\"username\": \"alice\", \"role\": {\"name\": \"ROLE_USER\"}}\n" +
+				"{\"username\": \"bob\"}\n");
+
+		assertThat(rows, hasSize(4));
+		assertThat(rows.get(0).getError(), containsString("Not a valid JSON object"));
+		assertThat(rows.get(1).getError(), containsString("Not a valid JSON object"));
+		assertThat(rows.get(2).getError(), containsString("Column role is not a plain value"));
+		assertThat(rows.get(3).isMalformed(), is(false));
+		assertThat(rows.get(3).get("username"), is("bob"));
+	}
+
+	@Test
+	public void emptyFilesHaveNoRows() throws IOException {
+		assertThat(read(ImportFormat.CSV, ""), hasSize(0));
+		assertThat(read(ImportFormat.CSV, "username;email\n"), hasSize(0));
+		assertThat(read(ImportFormat.NDJSON, "\n\n"), hasSize(0));
+	}
+
+	private List<ImportRow> read(ImportFormat format, String content) throws IOException {
+		Path file = folder.newFile().toPath();
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+
+		List<ImportRow> rows = new ArrayList<>();
+		try (ImportRowReader reader = ImportRowReader.open(file, format, new ObjectMapper())) {
+			ImportRow row;
+			while ((row = reader.next()) != null)
+				rows.add(row);
+		}
+		return rows;
+	}
+}
@@ -0,0 +1,170 @@
+package ir.maralani.wishlist.imports;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ir.maralani.wishlist.WishlistApplication;
+import ir.maralani.wishlist.domain.User;
+import ir.maralani.wishlist.repository.RoleRepository;
+import ir.maralani.wishlist.repository.UserRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+@ActiveProfiles("dev")
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = WishlistApplication.class)
+public class UserExportServiceTest {
+
+	private static final String PASSWORD = "$2a$10$not-a-real-hash-but-exported-if-leaked";
+
+	private static final List<String> COLUMNS = Arrays.asList("id", "username", "f_name", "l_name", "email",
+			"phone", "tz_id", "enabled", "locked", "cred_expired", "lang", "expiration_date", "role", "description",
+			"created_by", "last_modified_by");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Autowired
+	private UserExportService userExportService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private RoleRepository roleRepository;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private User user;
+
+	/**
+	 * Number of users the last export reported
+	 */
+	private long exportedRows;
+
+	@Before
+	public void init() {
+		// Committed, the export reads through a session of its own
+		user = new User();
+		user.setType(User.Type.INTERNAL);
+		user.setUsername("export-" + System.nanoTime());
+		user.setPassword(PASSWORD);
+		user.setEnabled(true);
+		user.setRole(roleRepository.getByName("ROLE_USER"));
+		user.setLocale(Locale.ENGLISH);
+		user.setTimeZone(TimeZone.getTimeZone("UTC"));
+		user.setDescription("first;second\nthird");
+		user.setCreatedBy("system");
+		user = userRepository.save(user);
+	}
+
+	@After
+	public void cleanUp() {
+		userRepository.deleteById(user.getId());
+	}
+
+	@Test
+	public void csv_export_should_have_a_header_and_a_row_of_every_column_per_user() throws Exception {
+		String exported = export(ImportFormat.CSV);
+
+		assertThat(Arrays.asList(exported.substring(0, exported.indexOf('\n')).split(";")), equalTo(COLUMNS));
+		// Separators and line breaks within values are quoted, the row isn't broken apart
+		assertThat(exported, containsString(";\"first;second\nthird\";"));
+		List<ImportRow> rows = read(exported);
+		assertThat((long) rows.size(), is(exportedRows));
+		ImportRow row = rowOf(rows, user.getUsername());
+		assertThat(row.getError(), row.isMalformed(), is(false));
+		assertThat(row.get("id"), is(String.valueOf(user.getId())));
+		assertThat(row.get("role"), is("ROLE_USER"));
+		assertThat(row.get("description"), is("first;second\nthird"));
+		assertThat(row.get("email"), nullValue());
+	}
+
+	@Test
+	public void ndjson_export_should_have_an_object_per_line_without_missing_values() throws Exception {
+		List<String> lines = Arrays.asList(export(ImportFormat.NDJSON).split("\n"));
+		assertThat((long) lines.size(), is(exportedRows));
+		assertThat(lines, not(hasItem("")));
+
+		JsonNode exported = null;
+		for (String line : lines) {
+			JsonNode node = objectMapper.readTree(line);
+			assertThat(node.isObject(), is(true));
+			if (user.getUsername().equals(node.path("username").asText()))
+				exported = node;
+		}
+		assertThat(exported, notNullValue());
+		assertThat(exported.get("id").asLong(), is(user.getId()));
+		assertThat(exported.get("enabled").asBoolean(), is(true));
+		assertThat(exported.get("role").asText(), is("ROLE_USER"));
+		assertThat(exported.get("description").asText(), is("first;second\nthird"));
+		assertThat(exported.has("email"), is(false));
+	}
+
+	@Test
+	public void exports_should_never_contain_passwords() throws Exception {
+		for (ImportFormat format : ImportFormat.values()) {
+			String exported = export(format);
+
+			assertThat(exported, not(containsString("password")));
+			assertThat(exported, not(containsString(PASSWORD)));
+		}
+	}
+
+	private String export(ImportFormat format) throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		exportedRows = userExportService.export(format, output);
+		return output.toString(StandardCharsets.UTF_8.name());
+	}
+
+	/**
+	 * @return rows of a CSV export, read as an import reads them
+	 */
+	private List<ImportRow> read(String exported) throws IOException {
+		Path file = folder.newFile().toPath();
+		Files.write(file, exported.getBytes(StandardCharsets.UTF_8));
+
+		List<ImportRow> rows = new ArrayList<>();
+		try (ImportRowReader reader = ImportRowReader.open(file, ImportFormat.CSV, objectMapper)) {
+			ImportRow row;
+			while ((row = reader.next()) != null)
+				rows.add(row);
+		}
+		return rows;
+	}
+
+	private static ImportRow rowOf(List<ImportRow> rows, String username) {
+		for (ImportRow row : rows)
+			if (username.equals(row.get("username")))
+				return row;
+		throw new AssertionError("No row of " + username);
+	}
+}
@@ -0,0 +1,231 @@
+package ir.maralani.wishlist.imports;
+
+import ir.maralani.wishlist.WishlistApplication;
+import ir.maralani.wishlist.domain.User;
+import ir.maralani.wishlist.domain.UserDetailsWrapper;
+import ir.maralani.wishlist.repository.RoleRepository;
+import ir.maralani.wishlist.repository.UserRepository;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.startsWith;
+
+@ActiveProfiles("dev")
+@RunWith(SpringRunner.class)
+@SpringBootTest(
+		classes = WishlistApplication.class,
+		properties = "users.import.chunk-size=" + UserImportServiceTest.CHUNK_SIZE
+)
+public class UserImportServiceTest {
+
+	static final int CHUNK_SIZE = 4;
+
+	private static final String HEADER = "username;password;email;phone;enabled;tz_id;role;lang\n";
+
+	@Autowired
+	private UserImportService userImportService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private RoleRepository roleRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	/**
+	 * Prefix of every username of a test, so its users can be told apart and removed
+	 */
+	private final String prefix = "imp" + System.nanoTime() + "-";
+
+	@After
+	public void cleanUp() {
+		jdbcTemplate.update("drop trigger if exists reject_import on users");
+		jdbcTemplate.update("drop function if exists reject_import()");
+		jdbcTemplate.update("delete from users where username like ?", prefix + "%");
+	}
+
+	@Test
+	public void valid_rows_should_be_imported_with_their_passwords_hashed() throws Exception {
+		UserImportJob job = run(ImportFormat.CSV, HEADER +
+				row("a", "secret", prefix + "a@example.com", "1000001", "true", "Asia/Tehran", "ROLE_ADMIN", "fa") +
+				row("b") +
+				row("c", "", "", "", "false", "UTC", "", "") +
+				row("d") +
+				row("e"));
+
+		assertThat(job.getState(), is(UserImportJob.State.COMPLETED));
+		assertThat(job.getRowsRead(), is(5L));
+		assertThat(job.getImported(), is(5L));
+		assertThat(job.getRejected(), is(0L));
+
+		User a = userRepository.getByUsername(prefix + "a");
+		assertThat(a.getPassword(), startsWith("$2a$"));
+		assertThat(a.getEmail(), is(prefix + "a@example.com"));
+		assertThat(a.getEnabled(), is(true));
+		assertThat(a.getTimeZone().getID(), is("Asia/Tehran"));
+		assertThat(a.getRole().getName(), is("ROLE_ADMIN"));
+		assertThat(a.getLocale(), is(Locale.forLanguageTag("fa")));
+		// Defaults of the missing values
+		User b = userRepository.getByUsername(prefix + "b");
+		assertThat(b.getEnabled(), is(false));
+		assertThat(b.getRole().getName(), is("ROLE_USER"));
+		assertThat(b.getLocale(), is(Locale.ENGLISH));
+		assertThat(b.getCreatedBy(), is("importer"));
+	}
+
+	@Test
+	public void invalid_rows_should_be_rejected_with_the_reason_and_the_others_imported() throws Exception {
+		UserImportJob job = run(ImportFormat.CSV, HEADER +
+				row("valid") +
+				row("email", "", "not-an-email", "", "", "UTC", "", "") +
+				row("enabled", "", "", "", "maybe", "UTC", "", "") +
+				row("role", "", "", "", "", "UTC", "ROLE_NONEXISTENT", "") +
+				row("zone", "", "", "", "", "Mars/Olympus_Mons", "", "") +
+				"not;enough;columns\n" +
+				"has space;;;;;UTC;;\n");
+
+		assertThat(job.getState(), is(UserImportJob.State.COMPLETED));
+		assertThat(job.getImported(), is(1L));
+		assertThat(job.getRejected(), is(6L));
+		Map<Long, String> errors = errorsByLine(job);
+		assertThat(errors.get(3L), containsString("email"));
+		assertThat(errors.get(4L), containsString("enabled must be either true or false"));
+		assertThat(errors.get(5L), containsString("Unknown role ROLE_NONEXISTENT"));
+		assertThat(errors.get(6L), notNullValue());
+		assertThat(errors.get(7L), containsString("Expected 8 columns but found 3"));
+		assertThat(errors.get(8L), containsString("username"));
+	}
+
+	@Test
+	public void duplicates_within_the_import_and_of_existing_users_should_be_rejected() throws Exception {
+		User existing = new User();
+		existing.setType(User.Type.INTERNAL);
+		existing.setUsername(prefix + "existing");
+		existing.setEmail(prefix + "existing@example.com");
+		existing.setPhone("+989121000000");
+		existing.setRole(roleRepository.getByName("ROLE_USER"));
+		existing.setLocale(Locale.ENGLISH);
+		existing.setTimeZone(TimeZone.getTimeZone("UTC"));
+		existing.setCreatedBy("system");
+		userRepository.save(existing);
+
+		UserImportJob job = run(ImportFormat.NDJSON,
+				json("first", "first", "1000001") +
+				json("first", "other", "1000002") +
+				json("second", "first", "1000003") +
+				json("third", "third", "1000001") +
+				json("existing", "fourth", "1000004") +
+				json("fifth", "existing", "1000005") +
+				json("sixth", "sixth", "1000000"));
+
+		assertThat(job.getState(), is(UserImportJob.State.COMPLETED));
+		assertThat(job.getImported(), is(1L));
+		Map<Long, String> errors = errorsByLine(job);
+		assertThat(errors.get(2L), is("Username appears more than once in the import."));
+		assertThat(errors.get(3L), is("Email appears more than once in the import."));
+		assertThat(errors.get(4L), is("Phone appears more than once in the import."));
+		assertThat(errors.get(5L), is("Username is already taken."));
+		assertThat(errors.get(6L), is("Email is already taken."));
+		assertThat(errors.get(7L), is("Phone is already taken."));
+	}
+
+	@Test
+	public void chunk_failing_on_write_should_be_retried_row_by_row() throws Exception {
+		// Stands in for a user created concurrently, between the checks of a chunk and its write
+		jdbcTemplate.update("create function reject_import() returns trigger as $$ begin " +
+				"if new.username = '" + prefix + "b' then " +
+				"raise exception 'duplicate username' using errcode = 'unique_violation'; end if; " +
+				"return new; end $$ language plpgsql");
+		jdbcTemplate.update("create trigger reject_import before insert on users " +
+				"for each row execute procedure reject_import()");
+
+		UserImportJob job = run(ImportFormat.CSV, HEADER +
+				row("a") +
+				row("b") +
+				row("c") +
+				row("d") +
+				row("e"));
+
+		assertThat(job.getState(), is(UserImportJob.State.COMPLETED));
+		assertThat(job.getImported(), is(4L));
+		assertThat(job.getRejected(), is(1L));
+		assertThat(errorsByLine(job).get(3L), startsWith("Could not be written"));
+		assertThat(userRepository.getByUsername(prefix + "b") == null, is(true));
+		assertThat(userRepository.getByUsername(prefix + "a") != null, is(true));
+	}
+
+	private UserImportJob run(ImportFormat format, String content) throws IOException, InterruptedException {
+		Path file = Files.createTempFile("users-import-test-", format.getExtension());
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+
+		// Imports run as their submitter, who is recorded as creator of the users
+		SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+				new UserDetailsWrapper(0, "importer", "", AuthorityUtils.createAuthorityList("ROLE_ADMIN")),
+				null, AuthorityUtils.createAuthorityList("ROLE_ADMIN")));
+		UserImportJob job;
+		try {
+			job = userImportService.submit(file, format, "importer");
+		} finally {
+			SecurityContextHolder.clearContext();
+		}
+		long deadline = System.nanoTime() + 60_000_000_000L;
+		while (!job.isFinished() && System.nanoTime() < deadline)
+			Thread.sleep(50);
+		assertThat("The import didn't finish in time", job.isFinished(), is(true));
+		assertThat(Files.exists(file), is(false));
+		return job;
+	}
+
+	/**
+	 * @return a CSV line of {@link #HEADER} with nothing but the username and the required time zone
+	 */
+	private String row(String username) {
+		return row(username, "", "", "", "", "UTC", "", "");
+	}
+
+	/**
+	 * A CSV line of {@link #HEADER}, the username made unique to the test and the phone a mobile number
+	 * ending in the given digits
+	 */
+	private String row(String username, String password, String email, String phone, String enabled,
+					   String zone, String role, String lang) {
+		return String.join(";", prefix + username, password, email, phone.isEmpty() ? "" : "+98912" + phone,
+				enabled, zone, role, lang) + "\n";
+	}
+
+	private String json(String username, String email, String phone) {
+		return "{\"username\": \"" + prefix + username + "\", \"email\": \"" + prefix + email + "@example.com\", " +
+				"\"phone\": \"+98912" + phone + "\", \"tz_id\": \"UTC\"}\n";
+	}
+
+	private static Map<Long, String> errorsByLine(UserImportJob job) {
+		Map<Long, String> errors = new HashMap<>();
+		for (UserImportJob.RowError error : job.getErrors())
+			errors.put(error.getLine(), error.getMessage());
+		return errors;
+	}
+}
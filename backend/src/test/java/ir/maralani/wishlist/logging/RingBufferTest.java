@@ -0,0 +1,82 @@
+package ir.maralani.wishlist.logging;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class RingBufferTest {
+
+	@Test
+	public void roundsCapacityUpToPowerOfTwo() {
+		assertThat(new RingBuffer<>(1).capacity(), is(2));
+		assertThat(new RingBuffer<>(5).capacity(), is(8));
+		assertThat(new RingBuffer<>(8).capacity(), is(8));
+	}
+
+	@Test
+	public void pollsInOfferOrder() {
+		RingBuffer<Integer> buffer = new RingBuffer<>(4);
+		buffer.offer(1);
+		buffer.offer(2);
+		buffer.offer(3);
+
+		List<Integer> polled = new ArrayList<>();
+		Integer element;
+		while ((element = buffer.poll()) != null)
+			polled.add(element);
+
+		assertThat(polled, contains(1, 2, 3));
+		assertThat(buffer.poll(), nullValue());
+	}
+
+	@Test
+	public void rejectsOffersWhenFullUntilPolled() {
+		RingBuffer<Integer> buffer = new RingBuffer<>(2);
+
+		assertThat(buffer.offer(1), is(true));
+		assertThat(buffer.offer(2), is(true));
+		assertThat(buffer.offer(3), is(false));
+		assertThat(buffer.size(), is(2));
+
+		assertThat(buffer.poll(), is(1));
+		assertThat(buffer.offer(3), is(true));
+		assertThat(buffer.poll(), is(2));
+		assertThat(buffer.poll(), is(3));
+	}
+
+	@Test
+	public void deliversEveryAcceptedElementOfConcurrentProducers() {
+		int producers = 4;
+		int perProducer = 100_000;
+		RingBuffer<Integer> buffer = new RingBuffer<>(1024);
+		AtomicInteger accepted = new AtomicInteger();
+		CountDownLatch done = new CountDownLatch(producers);
+		for (int p = 0; p < producers; p++) {
+			new Thread(() -> {
+				for (int i = 0; i < perProducer; i++)
+					if (buffer.offer(i))
+						accepted.incrementAndGet();
+				done.countDown();
+			}).start();
+		}
+
+		long polled = 0;
+		while (done.getCount() > 0) {
+			if (buffer.poll() != null)
+				polled++;
+		}
+		while (buffer.poll() != null)
+			polled++;
+
+		assertThat(polled, equalTo((long) accepted.get()));
+	}
+}
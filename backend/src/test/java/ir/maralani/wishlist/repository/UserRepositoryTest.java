@@ -0,0 +1,198 @@
+package ir.maralani.wishlist.repository;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ir.maralani.wishlist.Constants;
+import ir.maralani.wishlist.WishlistApplication;
+import ir.maralani.wishlist.domain.Role;
+import ir.maralani.wishlist.domain.User;
+import ir.maralani.wishlist.domain.UserView;
+import ir.maralani.wishlist.sql.QueryCount;
+import ir.maralani.wishlist.sql.QueryCounter;
+import org.hibernate.Hibernate;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+@ActiveProfiles({"dev", "test"})
+@RunWith(SpringRunner.class)
+@SpringBootTest(
+		classes = WishlistApplication.class,
+		properties = {
+				"spring.jpa.properties.hibernate.jdbc.batch_size=" + UserRepositoryTest.BATCH_SIZE,
+				"spring.jpa.properties.hibernate.order_inserts=true"
+		}
+)
+@Transactional
+public class UserRepositoryTest {
+
+	// ROLE_USER, seeded by the initial schema
+	private static final long USER_ROLE_ID = 3L;
+
+	private static final int USERS = 120;
+
+	static final int BATCH_SIZE = 50;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Test
+	public void inserting_users_should_advance_the_sequence_once_per_id_block() {
+		Role role = entityManager.find(Role.class, USER_ROLE_ID);
+
+		QueryCount count = QueryCounter.during(() -> {
+			for (int i = 0; i < USERS; i++)
+				userRepository.save(newUser(role, i));
+			entityManager.flush();
+			return null;
+		});
+
+		long blocks = (USERS + Constants.Persistence.ID_BLOCK_SIZE - 1) / Constants.Persistence.ID_BLOCK_SIZE;
+		long batches = (USERS + BATCH_SIZE - 1) / BATCH_SIZE;
+		// A block left over from earlier inserts of this session factory may save one more round trip
+		count.assertAtMost("nextval", blocks);
+		// Each user is a single row in users, sent in batches
+		assertThat(count.getStatements(), is(count.count("nextval") + USERS));
+		count.assertRoundTripsAtMost(blocks + batches);
+	}
+
+	@Test
+	public void lookup_by_username_should_fetch_the_role_in_the_same_query() {
+		User saved = saveAndDetach();
+
+		QueryCount count = QueryCounter.during(() -> {
+			User user = userRepository.getByUsername(saved.getUsername());
+			assertThat(Hibernate.isInitialized(user.getRole()), is(true));
+			return user;
+		});
+
+		assertThat(count.getRoundTrips(), is(1L));
+		assertThat(count.count(" roles "), is(1L));
+	}
+
+	@Test
+	public void lookup_by_id_should_fetch_the_role_in_the_same_query() {
+		User saved = saveAndDetach();
+
+		QueryCount count = QueryCounter.during(() -> {
+			User user = userRepository.findById(saved.getId()).orElseThrow(AssertionError::new);
+			assertThat(Hibernate.isInitialized(user.getRole()), is(true));
+			return user;
+		});
+
+		assertThat(count.getRoundTrips(), is(1L));
+		assertThat(count.count(" roles "), is(1L));
+	}
+
+	@Test
+	public void view_lookup_should_be_a_single_query() {
+		User saved = saveAndDetach();
+
+		QueryCount count = QueryCounter.during(() -> userRepository.findViewById(saved.getId()));
+
+		assertThat(count.getRoundTrips(), is(1L));
+		assertThat(count.getRows(), is(1L));
+	}
+
+	@Test
+	public void view_should_serialize_smaller_than_the_entity() throws Exception {
+		User saved = saveAndDetach();
+
+		// As GET /api/user/{id} used to answer, but for the users of the role, which would loop back
+		byte[] entity = objectMapper.copy().addMixIn(Role.class, RoleMixIn.class)
+				.writeValueAsBytes(userRepository.findById(saved.getId()).orElseThrow(AssertionError::new));
+		byte[] view = objectMapper.writerFor(UserView.class)
+				.writeValueAsBytes(userRepository.findViewById(saved.getId()).orElseThrow(AssertionError::new));
+
+		assertThat(view.length, lessThan(entity.length));
+	}
+
+	@Test
+	public void loading_users_without_the_role_graph_should_not_join_the_roles() {
+		saveAndDetach();
+
+		QueryCount count = QueryCounter.during(() -> {
+			for (User user : userRepository.findAll())
+				assertThat(Hibernate.isInitialized(user.getRole()), is(false));
+			return null;
+		});
+
+		assertThat(count.count(" roles "), is(0L));
+	}
+
+	@Test
+	public void updating_a_user_should_write_only_the_changed_columns_and_check_the_version() {
+		User saved = saveAndDetach();
+		User user = userRepository.findById(saved.getId()).orElseThrow(AssertionError::new);
+
+		// Only the flush, the select above reads every column
+		QueryCount count = QueryCounter.during(() -> {
+			user.setLocked(true);
+			entityManager.flush();
+			return user;
+		});
+
+		assertThat(count.count("update users"), is(1L));
+		assertThat(count.count("and version=?"), is(1L));
+		assertThat(count.count("f_name"), is(0L));
+	}
+
+	@Test(expected = OptimisticLockException.class)
+	public void updating_a_stale_user_should_fail() {
+		User stale = saveAndDetach();
+
+		User current = userRepository.findById(stale.getId()).orElseThrow(AssertionError::new);
+		current.setLocked(true);
+		entityManager.flush();
+		entityManager.clear();
+
+		stale.setEnabled(true);
+		entityManager.merge(stale);
+		entityManager.flush();
+	}
+
+	@JsonIgnoreProperties({"users", "hibernateLazyInitializer", "handler"})
+	private abstract static class RoleMixIn {
+	}
+
+	/**
+	 * @return a new user, saved and no longer in the persistence context
+	 */
+	private User saveAndDetach() {
+		User user = userRepository.save(newUser(entityManager.find(Role.class, USER_ROLE_ID), USERS));
+		entityManager.flush();
+		entityManager.clear();
+		return user;
+	}
+
+	private static User newUser(Role role, int index) {
+		User user = new User();
+		user.setType(User.Type.INTERNAL);
+		user.setUsername("batch-user-" + index);
+		user.setRole(role);
+		user.setLocale(Locale.ENGLISH);
+		user.setTimeZone(TimeZone.getTimeZone("UTC"));
+		// Nobody is authenticated here for auditing to pick up
+		user.setCreatedBy("system");
+		return user;
+	}
+}
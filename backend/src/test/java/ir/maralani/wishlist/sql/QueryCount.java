@@ -0,0 +1,88 @@
+package ir.maralani.wishlist.sql;
+
+import java.util.List;
+
+/**
+ * SQL counted by {@link QueryCounter}, with assertions that list every query on failure,
+ * so an unexpected query (e.g. one per loaded entity) can be told apart right away.
+ */
+public class QueryCount {
+
+    private final long roundTrips;
+    private final long statements;
+    private final long rows;
+    private final List<String> queries;
+
+    QueryCount(long roundTrips, long statements, long rows, List<String> queries) {
+        this.roundTrips = roundTrips;
+        this.statements = statements;
+        this.rows = rows;
+        this.queries = queries;
+    }
+
+    /**
+     * @return number of executions sent to the database, a JDBC batch being one
+     */
+    public long getRoundTrips() {
+        return roundTrips;
+    }
+
+    /**
+     * @return number of statements executed, every statement of a batch counting
+     */
+    public long getStatements() {
+        return statements;
+    }
+
+    /**
+     * @return number of rows read from result sets
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    public List<String> getQueries() {
+        return queries;
+    }
+
+    /**
+     * @param fragment part of the SQL, case insensitive
+     * @return number of executed queries containing the fragment
+     */
+    public long count(String fragment) {
+        final String lowerCase = fragment.toLowerCase();
+        return queries.stream().filter(sql -> sql.toLowerCase().contains(lowerCase)).count();
+    }
+
+    public QueryCount assertRoundTripsAtMost(long budget) {
+        return check("round trips", roundTrips, budget);
+    }
+
+    public QueryCount assertStatementsAtMost(long budget) {
+        return check("statements", statements, budget);
+    }
+
+    public QueryCount assertRowsAtMost(long budget) {
+        return check("rows", rows, budget);
+    }
+
+    public QueryCount assertAtMost(String fragment, long budget) {
+        return check("queries containing '" + fragment + "'", count(fragment), budget);
+    }
+
+    private QueryCount check(String what, long actual, long budget) {
+        if (actual > budget)
+            throw new AssertionError("Expected at most " + budget + " " + what + " but there were " + actual +
+                    ", queries:\n  " + String.join("\n  ", queries));
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryCount{" +
+                "roundTrips=" + roundTrips +
+                ", statements=" + statements +
+                ", rows=" + rows +
+                '}';
+    }
+}
@@ -0,0 +1,85 @@
+package ir.maralani.wishlist.sql;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.StatementType;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the SQL going through the proxied datasource of the test profile, see {@link QueryCountingConfiguration}.
+ * <p>
+ * Counts are global rather than per thread, since requests are served by other threads than the test's,
+ * so blocks measured with {@link #during(Callable)} must not run concurrently with other database work.
+ */
+public class QueryCounter implements QueryExecutionListener, MethodExecutionListener {
+
+    private static final AtomicLong ROUND_TRIPS = new AtomicLong();
+    private static final AtomicLong STATEMENTS = new AtomicLong();
+    private static final AtomicLong ROWS = new AtomicLong();
+    private static final List<String> QUERIES = new CopyOnWriteArrayList<>();
+
+    /**
+     * Runs the block and counts the SQL it causes.
+     *
+     * @param block block to run
+     * @return counts of the block
+     */
+    public static QueryCount during(Callable<?> block) {
+        reset();
+        try {
+            block.call();
+        } catch (Exception e) {
+            throw new IllegalStateException("Measured block failed.", e);
+        }
+        return current();
+    }
+
+    public static void reset() {
+        ROUND_TRIPS.set(0);
+        STATEMENTS.set(0);
+        ROWS.set(0);
+        QUERIES.clear();
+    }
+
+    /**
+     * @return counts since the last {@link #reset()}
+     */
+    public static QueryCount current() {
+        return new QueryCount(ROUND_TRIPS.get(), STATEMENTS.get(), ROWS.get(), new ArrayList<>(QUERIES));
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        ROUND_TRIPS.incrementAndGet();
+        // A prepared batch is a single query with a set of parameters per statement
+        STATEMENTS.addAndGet(execInfo.isBatch() && execInfo.getStatementType() != StatementType.STATEMENT ?
+                execInfo.getBatchSize() : queryInfoList.size());
+        for (QueryInfo queryInfo : queryInfoList)
+            QUERIES.add(queryInfo.getQuery());
+    }
+
+    @Override
+    public void beforeMethod(MethodExecutionContext executionContext) {
+    }
+
+    @Override
+    public void afterMethod(MethodExecutionContext executionContext) {
+        if (executionContext.getTarget() instanceof ResultSet
+                && "next".equals(executionContext.getMethod().getName())
+                && Boolean.TRUE.equals(executionContext.getResult()))
+            ROWS.incrementAndGet();
+    }
+}
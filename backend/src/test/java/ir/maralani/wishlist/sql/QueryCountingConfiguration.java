@@ -0,0 +1,65 @@
+package ir.maralani.wishlist.sql;
+
+import ir.maralani.wishlist.Constants;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Routes the datasource of the test profile through a proxy reporting to {@link QueryCounter}.
+ */
+@Configuration
+@Profile(Constants.Profiles.TEST)
+public class QueryCountingConfiguration {
+
+    @Bean
+    public static BeanPostProcessor queryCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource) || bean instanceof QueryCountingDataSource)
+                    return bean;
+
+                final QueryCounter counter = new QueryCounter();
+                return new QueryCountingDataSource((DataSource) bean, ProxyDataSourceBuilder.create((DataSource) bean)
+                        .name(beanName)
+                        .listener(counter)
+                        .methodListener(counter)
+                        .proxyResultSet()
+                        .build());
+            }
+        };
+    }
+
+    /**
+     * Hands out the counted connections and still closes the pool behind them with the context.
+     */
+    public static class QueryCountingDataSource extends DelegatingDataSource implements Closeable {
+
+        private final DataSource pool;
+
+        QueryCountingDataSource(DataSource pool, DataSource counted) {
+            super(counted);
+            this.pool = pool;
+        }
+
+        @Override
+        public void close() {
+            if (pool instanceof Closeable) {
+                try {
+                    ((Closeable) pool).close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ir.maralani.wishlist.web;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class FrontendRoutesTest {
+
+	@Test
+	public void routes_of_the_frontend_are_everything_but_the_backend_and_the_assets() {
+		assertThat(FrontendRoutes.isRoute("/"), is(true));
+		assertThat(FrontendRoutes.isRoute("/login"), is(true));
+		assertThat(FrontendRoutes.isRoute("/user/42"), is(true));
+		assertThat(FrontendRoutes.isRoute("/index.html"), is(true));
+
+		assertThat(FrontendRoutes.isRoute("/api"), is(false));
+		assertThat(FrontendRoutes.isRoute("/api/user/42"), is(false));
+		assertThat(FrontendRoutes.isRoute("/actuator/health"), is(false));
+		assertThat(FrontendRoutes.isRoute("/static/js/app.3f2a1b.js"), is(false));
+		// Only whole segments count
+		assertThat(FrontendRoutes.isRoute("/apiary"), is(true));
+	}
+
+	@Test
+	public void frontend_requests_are_reads_of_routes_and_assets() {
+		assertThat(FrontendRoutes.FRONTEND_REQUESTS.matches(new MockHttpServletRequest("GET", "/login")), is(true));
+		assertThat(FrontendRoutes.FRONTEND_REQUESTS.matches(new MockHttpServletRequest("HEAD", "/static/css/app.css")),
+				is(true));
+
+		assertThat(FrontendRoutes.FRONTEND_REQUESTS.matches(new MockHttpServletRequest("POST", "/login")), is(false));
+		assertThat(FrontendRoutes.FRONTEND_REQUESTS.matches(new MockHttpServletRequest("GET", "/api/secured")),
+				is(false));
+		assertThat(FrontendRoutes.FRONTEND_REQUESTS.matches(new MockHttpServletRequest("GET", "/actuator/prometheus")),
+				is(false));
+	}
+}
@@ -0,0 +1,59 @@
+package ir.maralani.wishlist.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ir.maralani.wishlist.Constants;
+import ir.maralani.wishlist.domain.converter.JPACryptoConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.Arrays;
+
+/**
+ * Encryption and decryption of an attribute by {@link JPACryptoConverter}, as done for every
+ * encrypted column of every loaded or stored row.
+ */
+@State(Scope.Benchmark)
+public class CryptoConverterBenchmark {
+
+    @Param({"AES/ECB/PKCS5Padding", "AES/GCM/NoPadding"})
+    public String algorithm;
+
+    @Param({"16", "256"})
+    public int length;
+
+    private JPACryptoConverter converter;
+    private String plain;
+    private String cipher;
+
+    @Setup
+    public void setUp() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty(Constants.Crypto.ALGORITHM_PROPERTY, algorithm)
+                .withProperty(Constants.Crypto.KEY_PROPERTY, "0123456789abcdef");
+        converter = new JPACryptoConverter(environment, new SimpleMeterRegistry());
+
+        char[] chars = new char[length];
+        Arrays.fill(chars, 'x');
+        plain = new String(chars);
+        cipher = converter.convertToDatabaseColumn(plain);
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return converter.convertToDatabaseColumn(plain);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return converter.convertToEntityAttribute(cipher);
+    }
+
+    @Benchmark
+    public String roundTrip() {
+        return converter.convertToEntityAttribute(converter.convertToDatabaseColumn(plain));
+    }
+}
@@ -0,0 +1,94 @@
+package ir.maralani.wishlist.benchmark;
+
+import ir.maralani.wishlist.domain.Role;
+import ir.maralani.wishlist.domain.User;
+import ir.maralani.wishlist.domain.UserDetailsWrapper;
+import ir.maralani.wishlist.jwt.JwtTokenUtil;
+import ir.maralani.wishlist.repository.UserRepository;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.TimeZone;
+
+/**
+ * Builds the components under benchmark outside of a Spring container, wired the same way as in production.
+ */
+final class Fixtures {
+
+    static final String SECRET = "khersiskhers";
+    static final String USERNAME = "root";
+    static final long USER_ID = 1L;
+    // Seed password hash of the root user, cost 8
+    static final String PASSWORD_HASH = "$2a$08$PWNccQ0.CGR7EPpeiiAcBOzVhcERmNr1b/4cIU8roMGuOj6Pfso0.";
+
+    /**
+     * No-Op private constructor enforcing final status
+     */
+    private Fixtures() {
+        throw new IllegalAccessError("Cannot be instantiated.");
+    }
+
+    static JwtTokenUtil jwtTokenUtil(boolean stateless) {
+        JwtTokenUtil jwtTokenUtil = new JwtTokenUtil();
+        ReflectionTestUtils.setField(jwtTokenUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtTokenUtil, "stateless", stateless);
+        ReflectionTestUtils.setField(jwtTokenUtil, "statelessTokenValidity", 900L);
+        jwtTokenUtil.init();
+        return jwtTokenUtil;
+    }
+
+    static UserDetailsWrapper userDetails() {
+        return new UserDetailsWrapper(USER_ID, USERNAME, PASSWORD_HASH, true, true, true, true,
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_ROOT")));
+    }
+
+    static User user() {
+        Role role = new Role();
+        role.setName("ROLE_ROOT");
+        role.setDescription("Highest permission level");
+        role.setInternal(true);
+
+        User user = new User();
+        ReflectionTestUtils.setField(user, "id", USER_ID);
+        user.setType(User.Type.INTERNAL);
+        user.setUsername(USERNAME);
+        user.setPassword(PASSWORD_HASH);
+        user.setFirstName("Administrator");
+        user.setLastName("Administrator");
+        user.setEmail("admin@localhost");
+        user.setEnabled(true);
+        user.setLocked(false);
+        user.setCredentialExpired(false);
+        user.setLocale(Locale.ENGLISH);
+        user.setTimeZone(TimeZone.getTimeZone("Asia/Tehran"));
+        user.setRole(role);
+        return user;
+    }
+
+    /**
+     * In-memory {@link UserRepository} which knows a single user and answers every other call with nothing.
+     */
+    static UserRepository userRepository(User user) {
+        return (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getByUsername":
+                            return user.getUsername().equals(args[0]) ? user : null;
+                        case "findById":
+                            return user.getId().equals(args[0]) ? Optional.of(user) : Optional.empty();
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "UserRepository(" + user.getUsername() + ")";
+                        default:
+                            return method.getReturnType() == Optional.class ? Optional.empty() : null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,80 @@
+package ir.maralani.wishlist.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ir.maralani.wishlist.jwt.JwtRequestFilter;
+import ir.maralani.wishlist.jwt.JwtTokenUtil;
+import ir.maralani.wishlist.jwt.VerifiedTokenCache;
+import ir.maralani.wishlist.security.BoundedUserCache;
+import ir.maralani.wishlist.security.JwtUserDetailsService;
+import ir.maralani.wishlist.service.DefaultUserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.cache.NullUserCache;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * The whole {@link JwtRequestFilter} chain for an authenticated request, from the raw header
+ * to an authenticated security context, against an in-memory user repository.
+ */
+@State(Scope.Benchmark)
+public class JwtRequestFilterBenchmark {
+
+    @Param({"false", "true"})
+    public boolean tokenCache;
+
+    @Param({"false", "true"})
+    public boolean userCache;
+
+    @Param({"false", "true"})
+    public boolean stateless;
+
+    private JwtRequestFilter filter;
+    private String authorization;
+    private final FilterChain chain = (request, response) -> {
+    };
+
+    @Setup
+    public void setUp() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        JwtTokenUtil jwtTokenUtil = Fixtures.jwtTokenUtil(stateless);
+        UserCache cache = userCache ? new BoundedUserCache(10_000, Duration.ofMinutes(5)) : new NullUserCache();
+        JwtUserDetailsService userDetailsService = new JwtUserDetailsService(
+                new DefaultUserService(Fixtures.userRepository(Fixtures.user()), null, Duration.ofSeconds(5), 100),
+                cache, registry, Duration.ofSeconds(5));
+
+        filter = new JwtRequestFilter(userDetailsService, jwtTokenUtil, new VerifiedTokenCache(tokenCache, 10_000),
+                registry);
+        authorization = "Bearer " + jwtTokenUtil.generateToken(Fixtures.userDetails());
+    }
+
+    @TearDown
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public Authentication filter() throws ServletException, IOException {
+        // A fresh request each time, the filter runs only once per request
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/secured");
+        request.addHeader("Authorization", authorization);
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), chain);
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package ir.maralani.wishlist.benchmark;
+
+import ir.maralani.wishlist.jwt.JwtTokenUtil;
+import ir.maralani.wishlist.jwt.VerifiedToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * Signing and verification of tokens by {@link JwtTokenUtil}.
+ */
+@State(Scope.Benchmark)
+public class JwtTokenBenchmark {
+
+    /**
+     * Stateless tokens carry the whole principal and are noticeably larger
+     */
+    @Param({"false", "true"})
+    public boolean stateless;
+
+    private JwtTokenUtil jwtTokenUtil;
+    private UserDetails userDetails;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtTokenUtil = Fixtures.jwtTokenUtil(stateless);
+        userDetails = Fixtures.userDetails();
+        token = jwtTokenUtil.generateToken(userDetails);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtTokenUtil.generateToken(userDetails);
+    }
+
+    @Benchmark
+    public Boolean validateToken() {
+        return jwtTokenUtil.validateToken(token, userDetails);
+    }
+
+    @Benchmark
+    public VerifiedToken verifyToken() {
+        return jwtTokenUtil.verifyToken(token);
+    }
+}
@@ -0,0 +1,89 @@
+package ir.maralani.wishlist.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import ir.maralani.wishlist.Constants;
+import ir.maralani.wishlist.WishlistApplication;
+import ir.maralani.wishlist.domain.Role;
+import ir.maralani.wishlist.domain.UserView;
+import ir.maralani.wishlist.repository.UserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.UncheckedIOException;
+
+/**
+ * Read path of {@code GET /api/user/{id}}: the entity loaded and serialized as it used to be, in a session
+ * kept open for the serialization as the request did, against the {@link UserView} projection query with
+ * a precomputed writer. The users of the role are left out of the entity, which would otherwise be serialized
+ * round the loop between them.
+ * <p>
+ * Runs the application without its web server against the database of the development profile, which has
+ * to be up and migrated; the seeded root user is read. Run with the latency profile for percentiles and the
+ * allocation profile for bytes allocated per read. The sizes of both responses are compared in
+ * {@code UserRepositoryTest}.
+ */
+@State(Scope.Benchmark)
+public class UserReadBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private UserRepository userRepository;
+    private TransactionTemplate session;
+    private ObjectWriter entityWriter;
+    private ObjectWriter userViewWriter;
+
+    @JsonIgnoreProperties({"users", "hibernateLazyInitializer", "handler"})
+    private abstract static class RoleMixIn {
+    }
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(WishlistApplication.class)
+                .profiles(Constants.Profiles.DEV)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run();
+        userRepository = context.getBean(UserRepository.class);
+        // Configured by Spring Boot, as the one serializing responses
+        final ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+        entityWriter = objectMapper.copy().addMixIn(Role.class, RoleMixIn.class).writer();
+        userViewWriter = objectMapper.writerFor(UserView.class);
+        session = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        session.setReadOnly(true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] entity() {
+        return session.execute(status -> write(entityWriter,
+                userRepository.findById(Fixtures.USER_ID).orElseThrow(IllegalStateException::new)));
+    }
+
+    @Benchmark
+    public byte[] projection() {
+        return write(userViewWriter,
+                userRepository.findViewById(Fixtures.USER_ID).orElseThrow(IllegalStateException::new));
+    }
+
+    private static byte[] write(ObjectWriter writer, Object value) {
+        try {
+            return writer.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
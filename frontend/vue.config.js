@@ -1,4 +1,10 @@
 // vue.config.js
+const zlib = require('zlib');
+const CompressionPlugin = require('compression-webpack-plugin');
+
+// Text assets worth compressing, the backend serves the .gz and .br variants as they are
+const compressible = /\.(js|css|html|svg|json|map|ico|txt)$/;
+
 module.exports = {
   // proxy all webpack dev-server requests starting with /api
   // to our Spring Boot backend (localhost:8088) using http-proxy-middleware
@@ -15,5 +21,30 @@ module.exports = {
   // Change build paths to make them Maven compatible
   // see https://cli.vuejs.org/config/
   outputDir: 'target/dist',
-  assetsDir: 'static'
+  assetsDir: 'static',
+  // Precompress production builds with gzip and brotli at the highest levels, it's done once per build
+  // see https://github.com/webpack-contrib/compression-webpack-plugin
+  configureWebpack: config => {
+    if (process.env.NODE_ENV !== 'production') {
+      return;
+    }
+    config.plugins.push(
+      new CompressionPlugin({
+        filename: '[path].gz[query]',
+        algorithm: 'gzip',
+        compressionOptions: { level: 9 },
+        test: compressible,
+        threshold: 1024,
+        minRatio: 0.8
+      }),
+      new CompressionPlugin({
+        filename: '[path].br[query]',
+        algorithm: 'brotliCompress',
+        compressionOptions: { params: { [zlib.constants.BROTLI_PARAM_QUALITY]: zlib.constants.BROTLI_MAX_QUALITY } },
+        test: compressible,
+        threshold: 1024,
+        minRatio: 0.8
+      })
+    );
+  }
 };